@@ -1,17 +1,30 @@
 package com.vmware.gerrit.plugins.commitvalidator;
 
 import com.google.gerrit.extensions.annotations.Exports;
+import com.google.gerrit.extensions.events.GroupIndexedListener;
 import com.google.gerrit.extensions.registration.DynamicSet;
 import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.rules.SubmitRule;
-import com.google.inject.AbstractModule;
+import com.google.gerrit.lifecycle.LifecycleModule;
+import com.vmware.gerrit.plugins.commitvalidator.cache.GroupMembersCache;
+import com.vmware.gerrit.plugins.commitvalidator.cache.UserCache;
+import com.vmware.gerrit.plugins.commitvalidator.cache.ValidatedCommitCache;
 import com.vmware.gerrit.plugins.commitvalidator.listeners.CommitValidator;
+import com.vmware.gerrit.plugins.commitvalidator.listeners.GroupChangeListener;
 import com.vmware.gerrit.plugins.commitvalidator.rules.SubmitRules;
+import com.vmware.gerrit.plugins.commitvalidator.utils.JiraEndpointRegistry;
+import com.vmware.gerrit.plugins.commitvalidator.utils.ValidationExecutor;
 
-public class Module extends AbstractModule {
+public class Module extends LifecycleModule {
     @Override
     protected void configure() {
         DynamicSet.bind(binder(), CommitValidationListener.class).to(CommitValidator.class);
         bind(SubmitRule.class).annotatedWith(Exports.named("commit-validator")).to(SubmitRules.class);
+        DynamicSet.bind(binder(), GroupIndexedListener.class).to(GroupChangeListener.class);
+        install(GroupMembersCache.module());
+        install(UserCache.module());
+        install(ValidatedCommitCache.module());
+        listener().to(ValidationExecutor.class);
+        listener().to(JiraEndpointRegistry.class);
     }
 }
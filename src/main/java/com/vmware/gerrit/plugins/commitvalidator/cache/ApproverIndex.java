@@ -0,0 +1,80 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves lists of additional approvers into the set of account ids they cover, memoized by
+ * the list entries, so that approvals can be compared by account id without any REST call.
+ */
+@Singleton
+public class ApproverIndex {
+    private static final int MAX_APPROVER_LISTS = 1000;
+
+    private final Cache<List<String>, ImmutableSet<Account.Id>> approvers = CacheBuilder.newBuilder()
+            .maximumSize(MAX_APPROVER_LISTS)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+    private final GroupMembersCache groupMembersCache;
+    private final UserCache userCache;
+
+    @Inject
+    public ApproverIndex(GroupMembersCache groupMembersCache, UserCache userCache) {
+        this.groupMembersCache = groupMembersCache;
+        this.userCache = userCache;
+    }
+
+    /**
+     * Returns the account ids of all users and group members in given list of "user <name>" and
+     * "group <name>" entries
+     *
+     * @param entries
+     * @return
+     * @throws RestApiException
+     */
+    public ImmutableSet<Account.Id> get(List<String> entries) throws RestApiException {
+        List<String> key = ImmutableList.copyOf(entries);
+        ImmutableSet<Account.Id> accountIds = approvers.getIfPresent(key);
+        if (accountIds == null) {
+            accountIds = resolve(key);
+            approvers.put(key, accountIds);
+        }
+        return accountIds;
+    }
+
+    /**
+     * Drops all resolved approver lists, e.g. when the members of a group have changed
+     */
+    public void invalidateAll() {
+        approvers.invalidateAll();
+    }
+
+    private ImmutableSet<Account.Id> resolve(List<String> entries) throws RestApiException {
+        ImmutableSet.Builder<Account.Id> accountIds = ImmutableSet.builder();
+
+        for (String entry : entries) {
+            // Group names may contain spaces
+            String[] userGroupIdentifier = entry.trim().split("\\s+", 2);
+            if (userGroupIdentifier.length < 2) {
+                continue;
+            }
+
+            if (userGroupIdentifier[0].equals("group")) {
+                accountIds.addAll(groupMembersCache.getMembers(
+                        groupMembersCache.getUuid(userGroupIdentifier[1])).getAccountIds());
+            } else if (userGroupIdentifier[0].equals("user")) {
+                accountIds.add(userCache.get(userGroupIdentifier[1]).getAccountId());
+            }
+        }
+        return accountIds.build();
+    }
+}
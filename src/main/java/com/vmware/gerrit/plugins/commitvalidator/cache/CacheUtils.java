@@ -0,0 +1,31 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gerrit.extensions.restapi.RestApiException;
+
+import java.util.concurrent.ExecutionException;
+
+class CacheUtils {
+    private CacheUtils() {
+    }
+
+    /**
+     * Loads a value from given cache, rethrowing the RestApiException of the loader as is
+     *
+     * @param cache
+     * @param key
+     * @return
+     * @throws RestApiException
+     */
+    static <K, V> V get(LoadingCache<K, V> cache, K key) throws RestApiException {
+        try {
+            return cache.get(key);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RestApiException) {
+                throw (RestApiException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to load " + key, e.getCause());
+        }
+    }
+}
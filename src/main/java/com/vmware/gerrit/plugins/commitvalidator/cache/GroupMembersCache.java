@@ -0,0 +1,164 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.AccountGroup;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.common.GroupInfo;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.Url;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.vmware.gerrit.plugins.commitvalidator.entities.GroupMembers;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the transitive members of groups keyed by group UUID, and group UUIDs keyed by group
+ * name, so that group rosters are not fetched from Gerrit on every push and submit rule
+ * evaluation. Entries expire after a while and are evicted as soon as the group, or one of the
+ * groups it includes, is reindexed.
+ */
+@Slf4j
+@Singleton
+public class GroupMembersCache {
+    private static final String GROUP_MEMBERS = "group_members";
+    private static final String GROUP_UUIDS = "group_uuids";
+
+    public static Module module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                cache(GROUP_MEMBERS, AccountGroup.UUID.class, GroupMembers.class)
+                        .expireAfterWrite(Duration.ofMinutes(10))
+                        .loader(MembersLoader.class);
+                cache(GROUP_UUIDS, String.class, AccountGroup.UUID.class)
+                        .expireAfterWrite(Duration.ofMinutes(10))
+                        .loader(UuidLoader.class);
+            }
+        };
+    }
+
+    private final LoadingCache<AccountGroup.UUID, GroupMembers> members;
+    private final LoadingCache<String, AccountGroup.UUID> uuids;
+    private final AtomicLong generation = new AtomicLong();
+
+    @Inject
+    GroupMembersCache(@Named(GROUP_MEMBERS) LoadingCache<AccountGroup.UUID, GroupMembers> members,
+                      @Named(GROUP_UUIDS) LoadingCache<String, AccountGroup.UUID> uuids) {
+        this.members = members;
+        this.uuids = uuids;
+    }
+
+    /**
+     * Resolves a group name or UUID to the group UUID
+     *
+     * @param groupName
+     * @return
+     * @throws RestApiException
+     */
+    public AccountGroup.UUID getUuid(String groupName) throws RestApiException {
+        return CacheUtils.get(uuids, groupName);
+    }
+
+    /**
+     * Returns the members of given group, including the members of the groups it includes
+     *
+     * @param groupUuid
+     * @return
+     * @throws RestApiException
+     */
+    public GroupMembers getMembers(AccountGroup.UUID groupUuid) throws RestApiException {
+        return CacheUtils.get(members, groupUuid);
+    }
+
+    /**
+     * Returns a counter which is incremented whenever a group changes, so that results derived
+     * from group memberships can be keyed on it.
+     *
+     * @return
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Evicts the changed group and every cached group which includes it. All group names are
+     * evicted as well, as the group may have been renamed.
+     *
+     * @param groupUuid
+     */
+    public void evict(AccountGroup.UUID groupUuid) {
+        generation.incrementAndGet();
+        members.invalidate(groupUuid);
+        for (Map.Entry<AccountGroup.UUID, GroupMembers> entry : members.asMap().entrySet()) {
+            if (entry.getValue().getIncludedGroups().contains(groupUuid)) {
+                members.invalidate(entry.getKey());
+            }
+        }
+        uuids.invalidateAll();
+    }
+
+    static class UuidLoader extends CacheLoader<String, AccountGroup.UUID> {
+        private final GerritApi gerritApi;
+
+        @Inject
+        UuidLoader(GerritApi gerritApi) {
+            this.gerritApi = gerritApi;
+        }
+
+        @Override
+        public AccountGroup.UUID load(String groupName) throws RestApiException {
+            return AccountGroup.uuid(Url.decode(gerritApi.groups().id(groupName).get().id));
+        }
+    }
+
+    static class MembersLoader extends CacheLoader<AccountGroup.UUID, GroupMembers> {
+        private final GerritApi gerritApi;
+
+        @Inject
+        MembersLoader(GerritApi gerritApi) {
+            this.gerritApi = gerritApi;
+        }
+
+        @Override
+        public GroupMembers load(AccountGroup.UUID groupUuid) throws RestApiException {
+            ImmutableSet.Builder<Account.Id> accountIds = ImmutableSet.builder();
+            Set<AccountGroup.UUID> visited = new HashSet<>();
+            Deque<AccountGroup.UUID> pending = new ArrayDeque<>();
+            pending.add(groupUuid);
+
+            // Walk the included groups iteratively, so that cyclic includes terminate
+            while (!pending.isEmpty()) {
+                AccountGroup.UUID uuid = pending.poll();
+                if (!visited.add(uuid)) {
+                    continue;
+                }
+
+                for (AccountInfo accountInfo : gerritApi.groups().id(uuid.get()).members()) {
+                    accountIds.add(Account.id(accountInfo._accountId));
+                }
+                for (GroupInfo includedGroup : gerritApi.groups().id(uuid.get()).includedGroups()) {
+                    pending.add(AccountGroup.uuid(Url.decode(includedGroup.id)));
+                }
+            }
+
+            visited.remove(groupUuid);
+            log.debug("Loaded members of group {}", groupUuid.get());
+            return new GroupMembers(accountIds.build(), ImmutableSet.copyOf(visited));
+        }
+    }
+}
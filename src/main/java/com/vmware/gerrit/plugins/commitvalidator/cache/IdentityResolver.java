@@ -0,0 +1,76 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.server.account.Emails;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.PersonIdent;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the email address of a commit author or committer to the Gerrit account owning it,
+ * using the external ids of the accounts. Results are kept in a bounded LRU cache, including
+ * emails which do not belong to exactly one account.
+ */
+@Slf4j
+@Singleton
+public class IdentityResolver {
+    private static final int MAX_IDENTITIES = 10000;
+
+    private final Cache<String, Optional<Account.Id>> identities = CacheBuilder.newBuilder()
+            .maximumSize(MAX_IDENTITIES)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+    private final Emails emails;
+
+    @Inject
+    public IdentityResolver(Emails emails) {
+        this.emails = emails;
+    }
+
+    /**
+     * Returns the account of given person, if its email belongs to exactly one account
+     *
+     * @param person
+     * @return
+     */
+    public Optional<Account.Id> resolve(PersonIdent person) {
+        String email = person.getEmailAddress();
+        if (email == null || email.isEmpty()) {
+            return Optional.empty();
+        }
+
+        String key = email.toLowerCase(Locale.US);
+        Optional<Account.Id> accountId = identities.getIfPresent(key);
+        if (accountId == null) {
+            try {
+                accountId = lookup(email);
+            } catch (IOException e) {
+                // Do not cache lookup failures
+                log.warn("Unable to resolve the account of {}: {}", email, e.getMessage());
+                return Optional.empty();
+            }
+            identities.put(key, accountId);
+        }
+        return accountId;
+    }
+
+    private Optional<Account.Id> lookup(String email) throws IOException {
+        ImmutableSet<Account.Id> accountIds = emails.getAccountFor(email);
+        if (accountIds.size() == 1) {
+            return Optional.of(accountIds.iterator().next());
+        }
+        if (accountIds.size() > 1) {
+            log.warn("Email {} belongs to {} accounts, it is not resolved to any of them", email, accountIds.size());
+        }
+        return Optional.empty();
+    }
+}
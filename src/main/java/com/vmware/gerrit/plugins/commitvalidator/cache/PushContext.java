@@ -0,0 +1,39 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.vmware.gerrit.plugins.commitvalidator.config.ConfigSnapshot;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ExtractedMessage;
+import com.vmware.gerrit.plugins.commitvalidator.entities.ProjectRules;
+import lombok.Getter;
+import lombok.Setter;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State shared by the validations of all commits of one push to one ref. The config snapshot
+ * and the project rules are read once for the push, and the skip decisions are made once per
+ * author and committer email. The entry values extracted from the commits of the push while
+ * resolving their endpoint values are handed to the validation of each commit.
+ */
+@Getter
+public class PushContext {
+    private final ConfigSnapshot snapshot;
+    @Setter
+    private volatile boolean projectRulesLoaded;
+    // Null if the project has no rules for the ref
+    @Setter
+    private volatile ProjectRules projectRules;
+    // Email -> whether commits of the author, or committer, skip the validation
+    private final Map<String, Boolean> authorSkips = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> committerSkips = new ConcurrentHashMap<>();
+    // Set once the endpoint values of all commits of the push have been resolved
+    @Setter
+    private volatile boolean endpointValuesPrefetched;
+    // Commit -> its entry values, taken by the validation of the commit
+    private final Map<ObjectId, ExtractedMessage> extractedMessages = new ConcurrentHashMap<>();
+
+    public PushContext(ConfigSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+}
@@ -0,0 +1,47 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Singleton;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Push contexts keyed by the receive command of the push. Gerrit validates all commits of a
+ * push with the same command instance, so the context is looked up by identity and is dropped
+ * once the push is done and the command is garbage collected, or after a short idle time.
+ */
+@Singleton
+public class PushContextCache {
+    private static final int MAX_PUSHES = 1000;
+
+    private final Cache<ReceiveCommand, PushContext> contexts = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(MAX_PUSHES)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Returns the context of the push with given receive command, creating it for the first
+     * commit of the push. Without a command, e.g. for changes created through the REST API,
+     * every call returns a new context.
+     *
+     * @param command
+     * @param factory
+     * @return
+     */
+    public PushContext get(ReceiveCommand command, Supplier<PushContext> factory) {
+        if (command == null) {
+            return factory.get();
+        }
+
+        PushContext context = contexts.getIfPresent(command);
+        if (context == null) {
+            context = factory.get();
+            contexts.put(command, context);
+        }
+        return context;
+    }
+}
@@ -0,0 +1,82 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.AccountGroup;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.entities.SkipPrincipals;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves skip lists into the account ids and group UUIDs they reference, memoized by the
+ * list entries. Group rosters are not expanded, membership is checked against the effective
+ * groups of the author or committer instead.
+ */
+@Singleton
+public class SkipPrincipalIndex {
+    private static final int MAX_SKIP_LISTS = 1000;
+
+    private final Cache<List<String>, SkipPrincipals> principals = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SKIP_LISTS)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+    private final GroupMembersCache groupMembersCache;
+    private final UserCache userCache;
+
+    @Inject
+    public SkipPrincipalIndex(GroupMembersCache groupMembersCache, UserCache userCache) {
+        this.groupMembersCache = groupMembersCache;
+        this.userCache = userCache;
+    }
+
+    /**
+     * Returns the resolved principals of given list of "user <name>" and "group <name>" entries
+     *
+     * @param entries
+     * @return
+     * @throws RestApiException
+     */
+    public SkipPrincipals get(List<String> entries) throws RestApiException {
+        List<String> key = ImmutableList.copyOf(entries);
+        SkipPrincipals skipPrincipals = principals.getIfPresent(key);
+        if (skipPrincipals == null) {
+            skipPrincipals = resolve(key);
+            principals.put(key, skipPrincipals);
+        }
+        return skipPrincipals;
+    }
+
+    /**
+     * Drops all resolved skip lists, e.g. when a group has been renamed
+     */
+    public void invalidateAll() {
+        principals.invalidateAll();
+    }
+
+    private SkipPrincipals resolve(List<String> entries) throws RestApiException {
+        ImmutableSet.Builder<Account.Id> accountIds = ImmutableSet.builder();
+        ImmutableSet.Builder<AccountGroup.UUID> groupUuids = ImmutableSet.builder();
+
+        for (String entry : entries) {
+            // Group names may contain spaces
+            String[] userGroupIdentifier = entry.trim().split("\\s+", 2);
+            if (userGroupIdentifier.length < 2) {
+                continue;
+            }
+
+            if (userGroupIdentifier[0].equals("group")) {
+                groupUuids.add(groupMembersCache.getUuid(userGroupIdentifier[1]));
+            } else if (userGroupIdentifier[0].equals("user")) {
+                accountIds.add(userCache.get(userGroupIdentifier[1]).getAccountId());
+            }
+        }
+        return new SkipPrincipals(accountIds.build(), groupUuids.build());
+    }
+}
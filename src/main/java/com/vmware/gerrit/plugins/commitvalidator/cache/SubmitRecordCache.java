@@ -0,0 +1,55 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.common.data.SubmitRecord.Status;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.entities.SubmitRecordKey;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of submit rule results. A new vote, patch set or config change yields a new key,
+ * so stale results are never served and just age out of the cache.
+ */
+@Singleton
+public class SubmitRecordCache {
+    private static final int MAX_RECORDS = 10000;
+
+    private final Cache<SubmitRecordKey, Optional<Status>> records = CacheBuilder.newBuilder()
+            .maximumSize(MAX_RECORDS)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+
+    @Inject
+    public SubmitRecordCache(MetricMaker metricMaker) {
+        metricMaker.newCallbackMetric("submit_record_cache/hit_count", Long.class,
+                new Description("Number of submit rule evaluations served from the submit record cache")
+                        .setCumulative().setUnit("hits"),
+                () -> records.stats().hitCount());
+        metricMaker.newCallbackMetric("submit_record_cache/miss_count", Long.class,
+                new Description("Number of submit rule evaluations which were not cached")
+                        .setCumulative().setUnit("misses"),
+                () -> records.stats().missCount());
+    }
+
+    /**
+     * Returns the cached submit status for given key, an empty status if the rule does not apply
+     * to the change, or null if the change has not been evaluated in this state yet.
+     *
+     * @param key
+     * @return
+     */
+    public Optional<Status> getIfPresent(SubmitRecordKey key) {
+        return records.getIfPresent(key);
+    }
+
+    public void put(SubmitRecordKey key, Optional<Status> status) {
+        records.put(key, status);
+    }
+}
@@ -0,0 +1,69 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.extensions.api.GerritApi;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.vmware.gerrit.plugins.commitvalidator.entities.GerritUser;
+
+import java.time.Duration;
+
+/**
+ * Caches the accounts referenced by "user" entries of the plugin config, keyed by the account
+ * identifier used in the config.
+ */
+@Singleton
+public class UserCache {
+    private static final String USERS = "users";
+
+    public static Module module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                cache(USERS, String.class, GerritUser.class)
+                        .expireAfterWrite(Duration.ofMinutes(10))
+                        .loader(Loader.class);
+            }
+        };
+    }
+
+    private final LoadingCache<String, GerritUser> users;
+
+    @Inject
+    UserCache(@Named(USERS) LoadingCache<String, GerritUser> users) {
+        this.users = users;
+    }
+
+    /**
+     * Returns the account of given user
+     *
+     * @param user
+     * @return
+     * @throws RestApiException
+     */
+    public GerritUser get(String user) throws RestApiException {
+        return CacheUtils.get(users, user);
+    }
+
+    static class Loader extends CacheLoader<String, GerritUser> {
+        private final GerritApi gerritApi;
+
+        @Inject
+        Loader(GerritApi gerritApi) {
+            this.gerritApi = gerritApi;
+        }
+
+        @Override
+        public GerritUser load(String user) throws RestApiException {
+            AccountInfo accountInfo = gerritApi.accounts().id(user).get();
+            return new GerritUser(Account.id(accountInfo._accountId), accountInfo.username);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.vmware.gerrit.plugins.commitvalidator.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gerrit.entities.Project;
+import com.google.gerrit.server.cache.CacheModule;
+import com.google.gerrit.server.cache.serialize.StringCacheSerializer;
+import com.google.inject.Inject;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.RawParseUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Persistent cache of the validation outcome of commits, so that a commit pushed again, e.g. to
+ * another branch or after a rebase which kept it, is not validated again. The key is made of
+ * the project, the commit SHA, the commit template and the fingerprint of the plugin config,
+ * so a config change makes all commits be validated again. The value is an empty string for an
+ * accepted commit and the error message for a rejected one. Outcomes which depend on an
+ * endpoint, e.g. on the status of an issue, are not stored, as the endpoint may decide
+ * differently later.
+ * <p>
+ * The outcome only depends on the commit message, so it is also stored under a hash of the
+ * message, author and committer instead of the commit SHA. A new patch set which only changes
+ * files then gets the outcome of the previous one.
+ */
+@Singleton
+public class ValidatedCommitCache {
+    private static final String VALIDATED_COMMITS = "validated_commits";
+
+    public static Module module() {
+        return new CacheModule() {
+            @Override
+            protected void configure() {
+                persist(VALIDATED_COMMITS, String.class, String.class)
+                        .version(1)
+                        .keySerializer(StringCacheSerializer.INSTANCE)
+                        .valueSerializer(StringCacheSerializer.INSTANCE)
+                        .maximumWeight(100000)
+                        .diskLimit(64 * 1024 * 1024)
+                        .expireAfterWrite(Duration.ofDays(1));
+            }
+        };
+    }
+
+    private final Cache<String, String> outcomes;
+
+    @Inject
+    ValidatedCommitCache(@Named(VALIDATED_COMMITS) Cache<String, String> outcomes) {
+        this.outcomes = outcomes;
+    }
+
+    /**
+     * Builds the key of the outcome of given commit
+     *
+     * @param project
+     * @param commit
+     * @param commitTemplate name of the template the commit is validated against
+     * @param configFingerprint
+     * @return
+     */
+    public static String key(Project.NameKey project, ObjectId commit, String commitTemplate,
+                             String configFingerprint) {
+        return project.get() + '\n' + commit.name() + '\n' + commitTemplate + '\n' + configFingerprint;
+    }
+
+    /**
+     * Builds the key of the outcome of any commit with the same message, author and committer
+     * as given commit. Dates are not part of the key.
+     *
+     * @param project
+     * @param commit
+     * @param commitTemplate name of the template the commit is validated against
+     * @param configFingerprint
+     * @return
+     */
+    public static String messageKey(Project.NameKey project, RevCommit commit, String commitTemplate,
+                                    String configFingerprint) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putIdent(hasher, commit.getAuthorIdent());
+        putIdent(hasher, commit.getCommitterIdent());
+        hasher.putString(commit.getEncodingName(), StandardCharsets.UTF_8).putByte((byte) 0);
+
+        byte[] raw = commit.getRawBuffer();
+        int messageStart = RawParseUtils.commitMessage(raw, 0);
+        if (messageStart >= 0) {
+            hasher.putBytes(raw, messageStart, raw.length - messageStart);
+        }
+        return project.get() + '\n' + "message:" + hasher.hash() + '\n' + commitTemplate + '\n' + configFingerprint;
+    }
+
+    private static void putIdent(Hasher hasher, PersonIdent ident) {
+        hasher.putString(ident.getName(), StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(ident.getEmailAddress(), StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+
+    /**
+     * Returns the outcome of a commit validated before, an empty string if it was accepted, or
+     * null if it has not been validated with the same config
+     *
+     * @param key
+     * @return
+     */
+    public String getIfPresent(String key) {
+        return outcomes.getIfPresent(key);
+    }
+
+    public void putAccepted(String key) {
+        outcomes.put(key, "");
+    }
+
+    public void putRejected(String key, String errorMessage) {
+        outcomes.put(key, errorMessage);
+    }
+}
@@ -1,60 +1,91 @@
 package com.vmware.gerrit.plugins.commitvalidator.config;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.gerrit.entities.Project;
 import com.google.gerrit.server.config.PluginConfig;
 import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.project.NoSuchProjectException;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectState;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.vmware.gerrit.plugins.commitvalidator.entities.*;
+import com.vmware.gerrit.plugins.commitvalidator.utils.ApprovalConditions;
+import com.vmware.gerrit.plugins.commitvalidator.utils.BranchMatcher;
+import com.vmware.gerrit.plugins.commitvalidator.utils.PatternCache;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ObjectId;
 
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 @Slf4j
+@Singleton
 public class CommitValidatorConfig {
-    private PluginConfigFactory cfg;
-
-    public CommitValidatorConfig(PluginConfigFactory cfg) {
+    private static final int MAX_PROJECTS = 10000;
+
+    private final PluginConfigFactory cfg;
+    private final PatternCache patternCache;
+    private final ProjectCache projectCache;
+    private final AtomicReference<ConfigSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final Cache<Project.NameKey, ProjectRulesEntry> projectRules = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PROJECTS)
+            .build();
+
+    @Inject
+    public CommitValidatorConfig(PluginConfigFactory cfg, PatternCache patternCache, ProjectCache projectCache) {
         this.cfg = cfg;
+        this.patternCache = patternCache;
+        this.projectCache = projectCache;
     }
 
     /**
-     * Fetches the Jira endpoint configuration by name
+     * Returns the compiled snapshot of the global plugin config. Gerrit hands out the same
+     * Config instance until commit-validator.config is reloaded, so the snapshot is only
+     * rebuilt (and atomically swapped) when that instance changes.
      *
-     * @param endpointName
      * @return
      */
-    public JiraEndpoint getJiraEndpointConfig(String endpointName) {
-        if (StringUtils.isEmpty(endpointName)) {
-            return null;
-        }
-
-        // Check whether endpoint exists
+    public ConfigSnapshot getSnapshot() {
         Config pluginConfig = cfg.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN);
-        Set<String> endpointKeys = pluginConfig
-                .getNames(Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName, true);
+        ConfigSnapshot current = snapshot.get();
+        if (current != null && current.getSource() == pluginConfig) {
+            return current;
+        }
 
-        if (endpointKeys.isEmpty()) {
-            return null; // Endpoint doesn't exist
+        synchronized (this) {
+            current = snapshot.get();
+            if (current != null && current.getSource() == pluginConfig) {
+                return current;
+            }
+            ConfigSnapshot rebuilt = ConfigSnapshot.build(generation.incrementAndGet(), pluginConfig, patternCache);
+            snapshot.set(rebuilt);
+            log.info("Loaded plugin config generation {} with {} commit templates, {} template entries and {} Jira endpoints",
+                    rebuilt.getGeneration(), rebuilt.getCommitTemplates().size(),
+                    rebuilt.getTemplateEntries().size(), rebuilt.getJiraEndpoints().size());
+            return rebuilt;
         }
+    }
 
-        // Read Jira endpoint values
-        String serverUrl = pluginConfig.getString(
-                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName, Constants.CONFIG_ENDPOINT_URL);
-        String username = pluginConfig.getString(
-                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
-                Constants.CONFIG_ENDPOINT_USERNAME);
-        String password = pluginConfig.getString(
-                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
-                Constants.CONFIG_ENDPOINT_PASSWORD);
-
-        return new JiraEndpoint(serverUrl, username, password);
+    /**
+     * Fetches the Jira endpoint configuration by name
+     *
+     * @param endpointName
+     * @return
+     */
+    public JiraEndpoint getJiraEndpointConfig(String endpointName) {
+        return getSnapshot().getJiraEndpoint(endpointName);
     }
 
     /**
@@ -64,33 +95,7 @@ public class CommitValidatorConfig {
      * @return
      */
     public CommitTemplate getCommitTemplate(String templateName) {
-        if (StringUtils.isEmpty(templateName)) {
-            return null;
-        }
-
-        // Check whether template exists
-        Config pluginConfig = cfg.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN);
-        Set<String> templateKeys = pluginConfig
-                .getNames(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName, true);
-
-        if (templateKeys.isEmpty()) {
-            return null; // Template doesn't exist
-        }
-
-        // Read template values
-        String[] mandatoryTemplateEntriesList = pluginConfig
-                .getStringList(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName,
-                        Constants.CONFIG_COMMIT_TEMPLATE_MANDATORY_ENTRY);
-        String[] optionalTemplateEntriesList = pluginConfig
-                .getStringList(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName,
-                        Constants.CONFIG_COMMIT_TEMPLATE_OPTIONAL_ENTRY);
-
-        // Fetch all template entries
-        List<TemplateEntry> mandatoryTemplateFields = Arrays.asList(mandatoryTemplateEntriesList).stream()
-                .map(entryName -> getTemplateEntry(entryName)).collect(Collectors.toList());
-        List<TemplateEntry> optionalTemplateFields = Arrays.asList(optionalTemplateEntriesList).stream()
-                .map(entryName -> getTemplateEntry(entryName)).collect(Collectors.toList());
-        return new CommitTemplate(mandatoryTemplateFields, optionalTemplateFields);
+        return getSnapshot().getCommitTemplate(templateName);
     }
 
     /**
@@ -100,91 +105,72 @@ public class CommitValidatorConfig {
      * @return
      */
     public TemplateEntry getTemplateEntry(String entryName) {
-        if (StringUtils.isEmpty(entryName)) {
-            return null;
-        }
-
-        // Check whether template entry exists
-        Config pluginConfig = cfg.getGlobalPluginConfig(Constants.CONFIG_FILENAME_WITHOUT_EXTN);
-        Set<String> templateEntryKeys = pluginConfig
-                .getNames(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName, true);
+        return getSnapshot().getTemplateEntry(entryName);
+    }
 
-        if (templateEntryKeys.isEmpty()) {
-            return null; // Template entry doesn't exist
+    /**
+     * Returns the refs/meta/config revisions of given project and all its parent projects,
+     * which change whenever the project config of the project or of a parent is updated.
+     *
+     * @param projectNameKey
+     * @return
+     * @throws NoSuchProjectException
+     * @throws IOException
+     */
+    public String getProjectConfigRevision(Project.NameKey projectNameKey) throws NoSuchProjectException, IOException {
+        ProjectState projectState = projectCache.checkedGet(projectNameKey);
+        if (projectState == null) {
+            throw new NoSuchProjectException(projectNameKey);
         }
 
-        // Read template entry values
-        String kindStr = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_KIND);
-        TemplateEntryKind kind = TemplateEntryKind.STR_SUB; // Default value;
-        if (StringUtils.isNotEmpty(kindStr)) {
-            kind = TemplateEntryKind.valueOf(kindStr.toUpperCase());
+        StringBuilder revision = new StringBuilder();
+        for (ProjectState state : projectState.tree()) {
+            ObjectId configRevision = state.getConfig().getRevision();
+            revision.append(configRevision == null ? "-" : configRevision.name()).append(' ');
         }
-        String key = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_KEY);
-        String value = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_VALUE);
-
-        String sampleValue = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_SAMPLE_VALUE);
-        String templateEntryTypeStr = pluginConfig
-                .getString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                        Constants.CONFIG_TEMPLATE_ENTRY_TYPE);
-        TemplateEntryType type = TemplateEntryType.STRING; // Default value
-        if (StringUtils.isNotEmpty(templateEntryTypeStr)) {
-            type = TemplateEntryType.valueOf(templateEntryTypeStr.toUpperCase());
-        }
-        boolean validateValAgainstEndpoint = pluginConfig
-                .getBoolean(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                        Constants.CONFIG_TEMPLATE_ENTRY_VALIDATE_VAL_AGAINST_ENDPOINT, false);
-        String endpointTypeStr = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_TYPE);
-        EndpointType endpointType = null;
-        if (StringUtils.isNotEmpty(endpointTypeStr)) {
-            endpointType = EndpointType.valueOf(endpointTypeStr.toUpperCase());
-        }
-
-        String endpointName = pluginConfig.getString(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_NAME);
-
-        String[] allowedStatuses = ArrayUtils.nullToEmpty(pluginConfig.getStringList(
-                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
-                Constants.CONFIG_TEMPLATE_ENTRY_ALLOWED_STATUS));
-
-        return new TemplateEntry(entryName, kind, type, key, value, sampleValue, validateValAgainstEndpoint,
-                endpointType, endpointName, Arrays.asList(allowedStatuses));
+        return revision.toString();
     }
 
     /**
-     * Fetches configured rules for given project and branch
+     * Fetches configured rules for given project and branch. The rules of a project, including
+     * the values inherited from its parents, are only parsed again when the project config of
+     * the project or of one of its parents has changed.
      *
      * @param projectNameKey
-     * @param branchName
+     * @param refName
      * @return
      * @throws NoSuchProjectException
+     * @throws IOException
      */
-    public ProjectRules getProjectRules(Project.NameKey projectNameKey, String branchName) throws NoSuchProjectException {
-        if (StringUtils.isEmpty(branchName)) {
+    public ProjectRules getProjectRules(Project.NameKey projectNameKey, String refName)
+            throws NoSuchProjectException, IOException {
+        if (StringUtils.isEmpty(refName)) {
             return null;
         }
 
-        // Read project rules
-        PluginConfig pluginConfig = cfg.getFromProjectConfig(projectNameKey, Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION);
-        boolean enabled = pluginConfig.getBoolean(Constants.CONFIG_ENABLED, true);
-        String[] branches = pluginConfig.getStringList(
-                Constants.CONFIG_PROJECT_RULES_BRANCH);
+        String revision = getProjectConfigRevision(projectNameKey);
+        ProjectRulesEntry entry = projectRules.getIfPresent(projectNameKey);
+        if (entry == null || !entry.getRevision().equals(revision)) {
+            entry = new ProjectRulesEntry(revision, readProjectRules(projectNameKey));
+            projectRules.put(projectNameKey, entry);
+        }
 
-        // If the branches are configured and given branch is not found, return nil.
+        // If the branches are configured and given branch is not matched, return nil.
         // If no branch is configured, consider it as for all branches of the repo.
-        if (branches != null && !Arrays.asList(branches).contains(branchName)) {
+        ProjectRules rules = entry.getRules();
+        if (!rules.getBranchMatcher().matches(refName)) {
             return null;
         }
+        return rules;
+    }
+
+    private ProjectRules readProjectRules(Project.NameKey projectNameKey) throws NoSuchProjectException {
+        // Read project rules
+        PluginConfig pluginConfig = cfg.getFromProjectConfigWithInheritance(projectNameKey,
+                Constants.CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION);
+        boolean enabled = pluginConfig.getBoolean(Constants.CONFIG_ENABLED, true);
+        String[] branches = pluginConfig.getStringList(
+                Constants.CONFIG_PROJECT_RULES_BRANCH);
 
         String commitTemplate = pluginConfig.getString(Constants.CONFIG_PROJECT_RULES_COMMIT_TEMPLATE);
         String[] skipTemplateValidationForAuthors = ArrayUtils.nullToEmpty(
@@ -196,9 +182,22 @@ public class CommitValidatorConfig {
         String[] additionalCodeReviewApprovers = ArrayUtils.nullToEmpty(
                 pluginConfig.getStringList(Constants.CONFIG_PROJECT_RULES_ADDITIONAL_CR_APPROVERS));
 
-        return new ProjectRules(enabled, commitTemplate, Arrays.asList(skipTemplateValidationForAuthors),
-                Arrays.asList(skipTemplateValidationForCommitters),
-                Arrays.asList(additionalCRApprovalConditions),
-                Arrays.asList(additionalCodeReviewApprovers));
+        ImmutableList<String> approvalConditions = ImmutableList.copyOf(additionalCRApprovalConditions);
+
+        log.debug("Project: {} - parsed the validation rules from the project config", projectNameKey.get());
+        return new ProjectRules(enabled, commitTemplate,
+                BranchMatcher.compile(branches == null ? null : Arrays.asList(branches)),
+                ImmutableList.copyOf(skipTemplateValidationForAuthors),
+                ImmutableList.copyOf(skipTemplateValidationForCommitters),
+                approvalConditions,
+                ApprovalConditions.compile(approvalConditions),
+                ImmutableList.copyOf(additionalCodeReviewApprovers));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class ProjectRulesEntry {
+        private final String revision;
+        private final ProjectRules rules;
     }
-}
\ No newline at end of file
+}
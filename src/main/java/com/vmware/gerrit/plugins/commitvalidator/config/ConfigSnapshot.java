@@ -0,0 +1,364 @@
+package com.vmware.gerrit.plugins.commitvalidator.config;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.vmware.gerrit.plugins.commitvalidator.entities.*;
+import com.vmware.gerrit.plugins.commitvalidator.utils.MultiPatternMatcher;
+import com.vmware.gerrit.plugins.commitvalidator.utils.PatternCache;
+import com.vmware.gerrit.plugins.commitvalidator.utils.PatternGuard;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.lib.Config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable, pre-parsed view of the global commit-validator.config.
+ * <p>
+ * A snapshot is built once per version of the global plugin config and then shared by all
+ * receive and submit rule threads, so the hot path only performs map lookups.
+ */
+@Slf4j
+@Getter
+public class ConfigSnapshot {
+    private final long generation;
+    // Hash of the config text, which unlike the generation is stable across restarts
+    private final String fingerprint;
+    private final Config source;
+    private final long commitTimeout;
+    private final int executorThreads;
+    private final boolean useVirtualThreads;
+    private final long patternTimeout;
+    private final int maxMessageLength;
+    private final ImmutableMap<String, TemplateEntry> templateEntries;
+    private final ImmutableMap<String, CommitTemplate> commitTemplates;
+    private final ImmutableMap<String, JiraEndpoint> jiraEndpoints;
+
+    private ConfigSnapshot(long generation, String fingerprint, Config source, long commitTimeout, int executorThreads,
+                           boolean useVirtualThreads, long patternTimeout, int maxMessageLength,
+                           ImmutableMap<String, TemplateEntry> templateEntries,
+                           ImmutableMap<String, CommitTemplate> commitTemplates,
+                           ImmutableMap<String, JiraEndpoint> jiraEndpoints) {
+        this.generation = generation;
+        this.fingerprint = fingerprint;
+        this.source = source;
+        this.commitTimeout = commitTimeout;
+        this.executorThreads = executorThreads;
+        this.useVirtualThreads = useVirtualThreads;
+        this.patternTimeout = patternTimeout;
+        this.maxMessageLength = maxMessageLength;
+        this.templateEntries = templateEntries;
+        this.commitTemplates = commitTemplates;
+        this.jiraEndpoints = jiraEndpoints;
+    }
+
+    /**
+     * Parses all endpoints, template entries and commit templates of the given config
+     *
+     * @param generation
+     * @param pluginConfig
+     * @param patternCache
+     * @return
+     */
+    public static ConfigSnapshot build(long generation, Config pluginConfig, PatternCache patternCache) {
+        String unsafePatternsStr = pluginConfig.getString(Constants.CONFIG_SECTION_VALIDATION, null,
+                Constants.CONFIG_VALIDATION_UNSAFE_PATTERNS);
+        UnsafePatternPolicy unsafePatternPolicy = UnsafePatternPolicy.WARN; // Default value
+        if (StringUtils.isNotEmpty(unsafePatternsStr)) {
+            try {
+                unsafePatternPolicy = UnsafePatternPolicy.valueOf(unsafePatternsStr.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown {} policy {}, using {}", Constants.CONFIG_VALIDATION_UNSAFE_PATTERNS,
+                        unsafePatternsStr, unsafePatternPolicy);
+            }
+        }
+
+        ImmutableMap.Builder<String, TemplateEntry> templateEntriesBuilder = ImmutableMap.builder();
+        for (String entryName : pluginConfig.getSubsections(Constants.CONFIG_SECTION_TEMPLATE_ENTRY)) {
+            try {
+                templateEntriesBuilder.put(entryName,
+                        readTemplateEntry(pluginConfig, entryName, patternCache, unsafePatternPolicy));
+            } catch (IllegalArgumentException e) {
+                // Ignoring the entry would let commits without it pass, so every commit it applies
+                // to is rejected instead
+                log.error("Template entry {} has an invalid definition, commits validated against it are rejected: {}",
+                        entryName, e.getMessage());
+                templateEntriesBuilder.put(entryName, TemplateEntry.misconfigured(entryName, e.getMessage()));
+            }
+        }
+        ImmutableMap<String, TemplateEntry> templateEntries = templateEntriesBuilder.build();
+
+        // Endpoint credentials may live only in the secure config, so endpoints referenced by
+        // template entries are read as well, even if the section is missing in commit-validator.config
+        Set<String> endpointNames = new TreeSet<>(pluginConfig.getSubsections(Constants.CONFIG_SECTION_JIRA_ENDPOINT));
+        templateEntries.values().stream()
+                .filter(entry -> entry.getEndpointType() == EndpointType.JIRA)
+                .filter(entry -> StringUtils.isNotEmpty(entry.getEndpointName()))
+                .forEach(entry -> endpointNames.add(entry.getEndpointName()));
+
+        ImmutableMap.Builder<String, JiraEndpoint> jiraEndpoints = ImmutableMap.builder();
+        for (String endpointName : endpointNames) {
+            JiraEndpoint endpoint = readJiraEndpoint(pluginConfig, endpointName);
+            if (StringUtils.isEmpty(endpoint.getUrl())) {
+                log.warn("Ignoring Jira endpoint {} as no url is configured for it", endpointName);
+                continue;
+            }
+            jiraEndpoints.put(endpointName, endpoint);
+        }
+
+        ImmutableMap.Builder<String, CommitTemplate> commitTemplates = ImmutableMap.builder();
+        for (String templateName : pluginConfig.getSubsections(Constants.CONFIG_SECTION_COMMIT_TEMPLATE)) {
+            commitTemplates.put(templateName, readCommitTemplate(pluginConfig, templateName, templateEntries));
+        }
+
+        long commitTimeout = pluginConfig.getTimeUnit(Constants.CONFIG_SECTION_VALIDATION, null,
+                Constants.CONFIG_VALIDATION_COMMIT_TIMEOUT, Constants.DEFAULT_VALIDATION_COMMIT_TIMEOUT_MS,
+                TimeUnit.MILLISECONDS);
+        int executorThreads = Math.max(1, pluginConfig.getInt(Constants.CONFIG_SECTION_VALIDATION,
+                Constants.CONFIG_VALIDATION_THREADS, Constants.DEFAULT_VALIDATION_THREADS));
+        boolean useVirtualThreads = pluginConfig.getBoolean(Constants.CONFIG_SECTION_VALIDATION,
+                Constants.CONFIG_VALIDATION_USE_VIRTUAL_THREADS, false);
+        long patternTimeout = pluginConfig.getTimeUnit(Constants.CONFIG_SECTION_VALIDATION, null,
+                Constants.CONFIG_VALIDATION_PATTERN_TIMEOUT, Constants.DEFAULT_VALIDATION_PATTERN_TIMEOUT_MS,
+                TimeUnit.MILLISECONDS);
+        int maxMessageLength = pluginConfig.getInt(Constants.CONFIG_SECTION_VALIDATION,
+                Constants.CONFIG_VALIDATION_MAX_MESSAGE_LENGTH, Constants.DEFAULT_VALIDATION_MAX_MESSAGE_LENGTH);
+
+        String fingerprint = Hashing.murmur3_128()
+                .hashString(pluginConfig.toText(), StandardCharsets.UTF_8).toString();
+
+        return new ConfigSnapshot(generation, fingerprint, pluginConfig, commitTimeout, executorThreads, useVirtualThreads,
+                patternTimeout, maxMessageLength, templateEntries, commitTemplates.build(), jiraEndpoints.build());
+    }
+
+    /**
+     * Fetches the Jira endpoint configuration by name
+     *
+     * @param endpointName
+     * @return
+     */
+    public JiraEndpoint getJiraEndpoint(String endpointName) {
+        if (StringUtils.isEmpty(endpointName)) {
+            return null;
+        }
+        return jiraEndpoints.get(endpointName);
+    }
+
+    /**
+     * Fetches commit template details by name
+     *
+     * @param templateName
+     * @return
+     */
+    public CommitTemplate getCommitTemplate(String templateName) {
+        if (StringUtils.isEmpty(templateName)) {
+            return null;
+        }
+        return commitTemplates.get(templateName);
+    }
+
+    /**
+     * Fetches template entry details by name
+     *
+     * @param entryName
+     * @return
+     */
+    public TemplateEntry getTemplateEntry(String entryName) {
+        if (StringUtils.isEmpty(entryName)) {
+            return null;
+        }
+        return templateEntries.get(entryName);
+    }
+
+    private static JiraEndpoint readJiraEndpoint(Config pluginConfig, String endpointName) {
+        String serverUrl = pluginConfig.getString(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName, Constants.CONFIG_ENDPOINT_URL);
+        String username = pluginConfig.getString(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_USERNAME);
+        String password = pluginConfig.getString(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_PASSWORD);
+        long cacheMaxAge = pluginConfig.getTimeUnit(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_CACHE_MAX_AGE,
+                Constants.DEFAULT_ENDPOINT_CACHE_MAX_AGE_MS, TimeUnit.MILLISECONDS);
+        long cacheMaxSize = pluginConfig.getLong(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_CACHE_MAX_SIZE, Constants.DEFAULT_ENDPOINT_CACHE_MAX_SIZE);
+        long notFoundCacheMaxAge = pluginConfig.getTimeUnit(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_NOT_FOUND_CACHE_MAX_AGE,
+                Constants.DEFAULT_ENDPOINT_NOT_FOUND_CACHE_MAX_AGE_MS, TimeUnit.MILLISECONDS);
+        int maxConnections = pluginConfig.getInt(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_MAX_CONNECTIONS, Constants.DEFAULT_ENDPOINT_MAX_CONNECTIONS);
+        long connectTimeout = pluginConfig.getTimeUnit(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_CONNECT_TIMEOUT,
+                Constants.DEFAULT_ENDPOINT_CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        long readTimeout = pluginConfig.getTimeUnit(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_READ_TIMEOUT,
+                Constants.DEFAULT_ENDPOINT_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        long healthCheckInterval = pluginConfig.getTimeUnit(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_HEALTH_CHECK_INTERVAL,
+                Constants.DEFAULT_ENDPOINT_HEALTH_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        int batchSize = Math.max(1, pluginConfig.getInt(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_BATCH_SIZE, Constants.DEFAULT_ENDPOINT_BATCH_SIZE));
+        String failurePolicyStr = pluginConfig.getString(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_ON_FAILURE);
+        EndpointFailurePolicy failurePolicy = EndpointFailurePolicy.FAIL_CLOSED; // Default value
+        if (StringUtils.isNotEmpty(failurePolicyStr)) {
+            try {
+                failurePolicy = EndpointFailurePolicy.valueOf(failurePolicyStr.trim().replace('-', '_').toUpperCase());
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown {} policy {} for Jira endpoint {}, using {}", Constants.CONFIG_ENDPOINT_ON_FAILURE,
+                        failurePolicyStr, endpointName, failurePolicy);
+            }
+        }
+        int failureWindow = pluginConfig.getInt(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_FAILURE_WINDOW, Constants.DEFAULT_ENDPOINT_FAILURE_WINDOW);
+        int failureRateThreshold = pluginConfig.getInt(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_FAILURE_RATE_THRESHOLD, Constants.DEFAULT_ENDPOINT_FAILURE_RATE_THRESHOLD);
+        long circuitOpenDuration = pluginConfig.getTimeUnit(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_CIRCUIT_OPEN_DURATION,
+                Constants.DEFAULT_ENDPOINT_CIRCUIT_OPEN_DURATION_MS, TimeUnit.MILLISECONDS);
+        int halfOpenProbes = pluginConfig.getInt(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_HALF_OPEN_PROBES, Constants.DEFAULT_ENDPOINT_HALF_OPEN_PROBES);
+        long callTimeout = pluginConfig.getTimeUnit(
+                Constants.CONFIG_SECTION_JIRA_ENDPOINT, endpointName,
+                Constants.CONFIG_ENDPOINT_CALL_TIMEOUT,
+                Constants.DEFAULT_ENDPOINT_CALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        return new JiraEndpoint(serverUrl, username, password, cacheMaxAge, cacheMaxSize, notFoundCacheMaxAge,
+                maxConnections, connectTimeout, readTimeout, healthCheckInterval, batchSize, failurePolicy,
+                failureWindow, failureRateThreshold, circuitOpenDuration, halfOpenProbes, callTimeout);
+    }
+
+    private static CommitTemplate readCommitTemplate(Config pluginConfig, String templateName,
+                                                     Map<String, TemplateEntry> templateEntries) {
+        String[] mandatoryTemplateEntriesList = pluginConfig
+                .getStringList(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName,
+                        Constants.CONFIG_COMMIT_TEMPLATE_MANDATORY_ENTRY);
+        String[] optionalTemplateEntriesList = pluginConfig
+                .getStringList(Constants.CONFIG_SECTION_COMMIT_TEMPLATE, templateName,
+                        Constants.CONFIG_COMMIT_TEMPLATE_OPTIONAL_ENTRY);
+
+        ImmutableList<TemplateEntry> mandatoryEntries =
+                resolveTemplateEntries(templateName, mandatoryTemplateEntriesList, templateEntries);
+        Map<String, Pattern> subjectPatterns = new LinkedHashMap<>();
+        Map<String, Pattern> bodyPatterns = new LinkedHashMap<>();
+        for (TemplateEntry entry : mandatoryEntries) {
+            if (entry.getValuePattern() == null) {
+                continue;
+            }
+            if (entry.getKind() == TemplateEntryKind.STR_SUB) {
+                subjectPatterns.put(entry.getName(), entry.getValuePattern());
+            } else if (entry.getKind() == TemplateEntryKind.STR_BODY) {
+                bodyPatterns.put(entry.getName(), entry.getValuePattern());
+            }
+        }
+
+        return new CommitTemplate(mandatoryEntries,
+                resolveTemplateEntries(templateName, optionalTemplateEntriesList, templateEntries),
+                MultiPatternMatcher.compile(subjectPatterns), MultiPatternMatcher.compile(bodyPatterns));
+    }
+
+    private static ImmutableList<TemplateEntry> resolveTemplateEntries(String templateName, String[] entryNames,
+                                                                       Map<String, TemplateEntry> templateEntries) {
+        ImmutableList.Builder<TemplateEntry> entries = ImmutableList.builder();
+        for (String entryName : entryNames) {
+            TemplateEntry entry = templateEntries.get(entryName);
+            if (entry == null) {
+                log.warn("Commit template {} refers to template entry {} which is not defined in the plugin config",
+                        templateName, entryName);
+                continue;
+            }
+            entries.add(entry);
+        }
+        return entries.build();
+    }
+
+    private static TemplateEntry readTemplateEntry(Config pluginConfig, String entryName, PatternCache patternCache,
+                                                   UnsafePatternPolicy unsafePatternPolicy) {
+        String kindStr = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_KIND);
+        TemplateEntryKind kind = TemplateEntryKind.STR_SUB; // Default value;
+        if (StringUtils.isNotEmpty(kindStr)) {
+            kind = TemplateEntryKind.valueOf(kindStr.toUpperCase());
+        }
+        String key = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_KEY);
+        String value = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_VALUE);
+
+        String sampleValue = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_SAMPLE_VALUE);
+        String templateEntryTypeStr = pluginConfig
+                .getString(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                        Constants.CONFIG_TEMPLATE_ENTRY_TYPE);
+        TemplateEntryType type = TemplateEntryType.STRING; // Default value
+        if (StringUtils.isNotEmpty(templateEntryTypeStr)) {
+            type = TemplateEntryType.valueOf(templateEntryTypeStr.toUpperCase());
+        }
+        boolean validateValAgainstEndpoint = pluginConfig
+                .getBoolean(Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                        Constants.CONFIG_TEMPLATE_ENTRY_VALIDATE_VAL_AGAINST_ENDPOINT, false);
+        String endpointTypeStr = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_TYPE);
+        EndpointType endpointType = null;
+        if (StringUtils.isNotEmpty(endpointTypeStr)) {
+            endpointType = EndpointType.valueOf(endpointTypeStr.toUpperCase());
+        }
+
+        String endpointName = pluginConfig.getString(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_ENDPOINT_NAME);
+
+        String[] allowedStatuses = ArrayUtils.nullToEmpty(pluginConfig.getStringList(
+                Constants.CONFIG_SECTION_TEMPLATE_ENTRY, entryName,
+                Constants.CONFIG_TEMPLATE_ENTRY_ALLOWED_STATUS));
+
+        // Compile the value pattern once per config generation. An invalid pattern throws
+        // PatternSyntaxException, which marks the entry as misconfigured.
+        Pattern valuePattern = null;
+        if (StringUtils.isNotBlank(value)) {
+            if (PatternGuard.hasNestedQuantifier(value.trim())) {
+                if (unsafePatternPolicy == UnsafePatternPolicy.REJECT) {
+                    throw new IllegalArgumentException(String.format(
+                            "value '%s' has nested quantifiers which may backtrack catastrophically", value));
+                }
+                log.warn("Value '{}' of template entry {} has nested quantifiers which may backtrack catastrophically",
+                        value, entryName);
+            }
+            valuePattern = patternCache.get(value.trim());
+        }
+
+        return new TemplateEntry(entryName, kind, type, key, value, sampleValue, validateValAgainstEndpoint,
+                endpointType, endpointName, ImmutableList.copyOf(Arrays.asList(allowedStatuses)), valuePattern,
+                null);
+    }
+}
@@ -1,17 +1,18 @@
 package com.vmware.gerrit.plugins.commitvalidator.entities;
 
+import com.google.common.collect.ImmutableList;
+import com.vmware.gerrit.plugins.commitvalidator.utils.MultiPatternMatcher;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
-import java.util.List;
-
 @Getter
-@Setter
 @AllArgsConstructor
 @ToString
 public class CommitTemplate {
-    private List<TemplateEntry> mandatoryEntry;
-    private List<TemplateEntry> optionalEntry;
+    private final ImmutableList<TemplateEntry> mandatoryEntry;
+    private final ImmutableList<TemplateEntry> optionalEntry;
+    // Patterns of the mandatory STR_SUB and STR_BODY entries, matched with one scan each
+    private final MultiPatternMatcher subjectMatcher;
+    private final MultiPatternMatcher bodyMatcher;
 }
@@ -1,5 +1,7 @@
 package com.vmware.gerrit.plugins.commitvalidator.entities;
 
+import java.util.concurrent.TimeUnit;
+
 public class Constants {
     // Config constants
     public static final String CONFIG_FILENAME_WITHOUT_EXTN = "commit-validator";
@@ -7,6 +9,13 @@ public class Constants {
     public static final String CONFIG_SECTION_TEMPLATE_ENTRY = "template-entry";
     public static final String CONFIG_SECTION_COMMIT_TEMPLATE = "commit-template";
     public static final String CONFIG_SECTION_PROJECT_RULES = "project-rules";
+    public static final String CONFIG_SECTION_VALIDATION = "validation";
+    public static final String CONFIG_VALIDATION_COMMIT_TIMEOUT = "commitTimeout";
+    public static final String CONFIG_VALIDATION_THREADS = "threads";
+    public static final String CONFIG_VALIDATION_USE_VIRTUAL_THREADS = "useVirtualThreads";
+    public static final String CONFIG_VALIDATION_PATTERN_TIMEOUT = "patternTimeout";
+    public static final String CONFIG_VALIDATION_UNSAFE_PATTERNS = "unsafePatterns";
+    public static final String CONFIG_VALIDATION_MAX_MESSAGE_LENGTH = "maxMessageLength";
     public static final String CONFIG_PROJECT_CONFIG_PLUGIN_SUB_SECTION = "commit-validator";
     public static final String CONFIG_PROJECT_RULES_BRANCH = "branch";
     public static final String CONFIG_PROJECT_RULES_COMMIT_TEMPLATE = "commitTemplate";
@@ -17,6 +26,20 @@ public class Constants {
     public static final String CONFIG_ENDPOINT_URL = "url";
     public static final String CONFIG_ENDPOINT_USERNAME = "username";
     public static final String CONFIG_ENDPOINT_PASSWORD = "password";
+    public static final String CONFIG_ENDPOINT_CACHE_MAX_AGE = "cacheMaxAge";
+    public static final String CONFIG_ENDPOINT_CACHE_MAX_SIZE = "cacheMaxSize";
+    public static final String CONFIG_ENDPOINT_NOT_FOUND_CACHE_MAX_AGE = "notFoundCacheMaxAge";
+    public static final String CONFIG_ENDPOINT_MAX_CONNECTIONS = "maxConnections";
+    public static final String CONFIG_ENDPOINT_CONNECT_TIMEOUT = "connectTimeout";
+    public static final String CONFIG_ENDPOINT_READ_TIMEOUT = "readTimeout";
+    public static final String CONFIG_ENDPOINT_HEALTH_CHECK_INTERVAL = "healthCheckInterval";
+    public static final String CONFIG_ENDPOINT_BATCH_SIZE = "batchSize";
+    public static final String CONFIG_ENDPOINT_ON_FAILURE = "onFailure";
+    public static final String CONFIG_ENDPOINT_FAILURE_WINDOW = "failureWindow";
+    public static final String CONFIG_ENDPOINT_FAILURE_RATE_THRESHOLD = "failureRateThreshold";
+    public static final String CONFIG_ENDPOINT_CIRCUIT_OPEN_DURATION = "circuitOpenDuration";
+    public static final String CONFIG_ENDPOINT_HALF_OPEN_PROBES = "halfOpenProbes";
+    public static final String CONFIG_ENDPOINT_CALL_TIMEOUT = "callTimeout";
     public static final String CONFIG_ENABLED = "enabled";
     public static final String CONFIG_TEMPLATE_ENTRY_KIND = "kind";
     public static final String CONFIG_TEMPLATE_ENTRY_KEY = "key";
@@ -30,6 +53,25 @@ public class Constants {
     public static final String CONFIG_COMMIT_TEMPLATE_MANDATORY_ENTRY = "mandatoryEntry";
     public static final String CONFIG_COMMIT_TEMPLATE_OPTIONAL_ENTRY = "optionalEntry";
     public static final String CONFIG_PROJECT = "project";
+    // Config defaults
+    public static final long DEFAULT_ENDPOINT_CACHE_MAX_AGE_MS = TimeUnit.MINUTES.toMillis(5);
+    public static final long DEFAULT_ENDPOINT_CACHE_MAX_SIZE = 10000;
+    public static final long DEFAULT_ENDPOINT_NOT_FOUND_CACHE_MAX_AGE_MS = TimeUnit.MINUTES.toMillis(1);
+    public static final int DEFAULT_ENDPOINT_MAX_CONNECTIONS = 20;
+    public static final long DEFAULT_ENDPOINT_CONNECT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
+    public static final long DEFAULT_ENDPOINT_READ_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    public static final long DEFAULT_ENDPOINT_HEALTH_CHECK_INTERVAL_MS = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_ENDPOINT_BATCH_SIZE = 50;
+    public static final int DEFAULT_ENDPOINT_FAILURE_WINDOW = 20;
+    public static final int DEFAULT_ENDPOINT_FAILURE_RATE_THRESHOLD = 50;
+    public static final long DEFAULT_ENDPOINT_CIRCUIT_OPEN_DURATION_MS = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_ENDPOINT_HALF_OPEN_PROBES = 3;
+    public static final long DEFAULT_ENDPOINT_LAST_KNOWN_STATUS_MAX_AGE_MS = TimeUnit.DAYS.toMillis(1);
+    public static final long DEFAULT_ENDPOINT_CALL_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
+    public static final long DEFAULT_VALIDATION_COMMIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    public static final int DEFAULT_VALIDATION_THREADS = 8;
+    public static final long DEFAULT_VALIDATION_PATTERN_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(1);
+    public static final int DEFAULT_VALIDATION_MAX_MESSAGE_LENGTH = 1024 * 1024;
     // Message Constants
     public static final String MESSAGE_VALIDATION_EXCEPTION = "Either missing or invalid commit template values";
     public static final String LINE_BREAK_ASTERISK = "************************************************************";
@@ -0,0 +1,5 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+public enum EndpointFailurePolicy {
+    FAIL_OPEN, FAIL_CLOSED, ACCEPT_IF_CACHED
+}
@@ -0,0 +1,7 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+public class EndpointUnavailableException extends Exception {
+    public EndpointUnavailableException(String errorMessage) {
+        super(errorMessage);
+    }
+}
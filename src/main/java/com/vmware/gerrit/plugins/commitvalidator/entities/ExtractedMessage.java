@@ -0,0 +1,19 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import com.google.common.collect.ImmutableList;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Values of the template entries extracted from one commit message, before they are validated
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class ExtractedMessage {
+    private final ImmutableList<MessageEntry> messageEntries;
+    // Whether the extraction was cut short, by an abandoned pattern, a misconfigured entry or
+    // an overlong message, so that the outcome must not be remembered
+    private final boolean degraded;
+}
@@ -0,0 +1,14 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import com.google.gerrit.entities.Account;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@AllArgsConstructor
+@ToString
+public class GerritUser {
+    private Account.Id accountId;
+    private String username;
+}
@@ -0,0 +1,16 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.AccountGroup;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@AllArgsConstructor
+@ToString
+public class GroupMembers {
+    private ImmutableSet<Account.Id> accountIds;
+    private ImmutableSet<AccountGroup.UUID> includedGroups;
+}
@@ -1,16 +1,31 @@
 package com.vmware.gerrit.plugins.commitvalidator.entities;
 
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
 @Getter
-@Setter
 @AllArgsConstructor
+@EqualsAndHashCode
 @ToString
 public class JiraEndpoint {
-    private String url;
-    private String username;
-    private String password;
+    private final String url;
+    private final String username;
+    @ToString.Exclude
+    private final String password;
+    private final long cacheMaxAge;
+    private final long cacheMaxSize;
+    private final long notFoundCacheMaxAge;
+    private final int maxConnections;
+    private final long connectTimeout;
+    private final long readTimeout;
+    private final long healthCheckInterval;
+    private final int batchSize;
+    private final EndpointFailurePolicy failurePolicy;
+    private final int failureWindow;
+    private final int failureRateThreshold;
+    private final long circuitOpenDuration;
+    private final int halfOpenProbes;
+    private final long callTimeout;
 }
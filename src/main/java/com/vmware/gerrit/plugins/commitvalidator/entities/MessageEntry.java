@@ -18,5 +18,7 @@ public class MessageEntry {
     private TemplateEntryType entryType;
     private TemplateEntryValidationStatus entryValidationStatus;
     private String validationMessage;
+    private boolean endpointDependent;
     private String example;
+    private TemplateEntry templateEntry;
 }
@@ -0,0 +1,11 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+/**
+ * Thrown when matching a template entry pattern takes longer than the configured limit. It is
+ * unchecked as it is raised from within the regex engine.
+ */
+public class PatternTimeoutException extends RuntimeException {
+    public PatternTimeoutException(String errorMessage) {
+        super(errorMessage);
+    }
+}
@@ -1,21 +1,22 @@
 package com.vmware.gerrit.plugins.commitvalidator.entities;
 
-import java.util.List;
-
+import com.google.common.collect.ImmutableList;
+import com.vmware.gerrit.plugins.commitvalidator.utils.ApprovalConditions;
+import com.vmware.gerrit.plugins.commitvalidator.utils.BranchMatcher;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
 @Getter
-@Setter
 @AllArgsConstructor
 @ToString
 public class ProjectRules {
-    private boolean enabled;
-    private String commitTemplate;
-    private List<String> skipTemplateValidationForAuthors;
-    private List<String> skipTemplateValidationForCommitters;
-    private List<String> additionalCodeReviewApprovalConditions;
-    private List<String> additionalCodeReviewApprovers;
+    private final boolean enabled;
+    private final String commitTemplate;
+    private final BranchMatcher branchMatcher;
+    private final ImmutableList<String> skipTemplateValidationForAuthors;
+    private final ImmutableList<String> skipTemplateValidationForCommitters;
+    private final ImmutableList<String> additionalCodeReviewApprovalConditions;
+    private final ApprovalConditions approvalConditions;
+    private final ImmutableList<String> additionalCodeReviewApprovers;
 }
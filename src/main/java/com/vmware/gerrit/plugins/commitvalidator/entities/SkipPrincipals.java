@@ -0,0 +1,24 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.AccountGroup;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Resolved form of a skip list: the accounts of its "user" entries and the UUIDs of its
+ * "group" entries.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class SkipPrincipals {
+    private ImmutableSet<Account.Id> accountIds;
+    private ImmutableSet<AccountGroup.UUID> groupUuids;
+
+    public boolean isEmpty() {
+        return accountIds.isEmpty() && groupUuids.isEmpty();
+    }
+}
@@ -0,0 +1,24 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Everything the submit record of a change depends on: the change revision, its topic and
+ * approvals and the versions of the plugin config, the project config and the group memberships.
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class SubmitRecordKey {
+    private int changeId;
+    private int patchSet;
+    private String topic;
+    private long approvalsHash;
+    private long configGeneration;
+    private String projectConfigRevision;
+    private long groupGeneration;
+}
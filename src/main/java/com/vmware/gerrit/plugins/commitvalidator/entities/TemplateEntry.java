@@ -1,25 +1,44 @@
 package com.vmware.gerrit.plugins.commitvalidator.entities;
 
+import com.google.common.collect.ImmutableList;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.ToString;
 
-import java.util.List;
+import java.util.regex.Pattern;
 
 @Getter
-@Setter
 @AllArgsConstructor
 @ToString
 public class TemplateEntry {
-    private String name;
-    private TemplateEntryKind kind;
-    private TemplateEntryType type;
-    private String key;
-    private String value;
-    private String exampleValue;
-    private boolean validateValueAgainstEndpoint;
-    private EndpointType endpointType;
-    private String endpointName;
-    private List<String> allowedStatuses;
+    private final String name;
+    private final TemplateEntryKind kind;
+    private final TemplateEntryType type;
+    private final String key;
+    private final String value;
+    private final String exampleValue;
+    private final boolean validateValueAgainstEndpoint;
+    private final EndpointType endpointType;
+    private final String endpointName;
+    private final ImmutableList<String> allowedStatuses;
+    private final Pattern valuePattern;
+    // Why the definition of the entry is invalid, or null if it is valid
+    private final String configError;
+
+    /**
+     * Creates an entry for an invalid definition, which rejects every commit it applies to
+     * instead of being ignored
+     *
+     * @param name
+     * @param configError
+     * @return
+     */
+    public static TemplateEntry misconfigured(String name, String configError) {
+        return new TemplateEntry(name, TemplateEntryKind.STR_SUB, TemplateEntryType.STRING, null, null, null,
+                false, null, null, ImmutableList.of(), null, configError);
+    }
+
+    public boolean isMisconfigured() {
+        return configError != null;
+    }
 }
@@ -5,9 +5,16 @@ import lombok.*;
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
 @ToString
 public class TemplateEntryValidationResult {
     private TemplateEntryValidationStatus status;
     private String message;
+    // Whether the status depends on an endpoint, e.g. on the status of an issue, rather than
+    // on the commit message alone
+    private boolean endpointDependent;
+
+    public TemplateEntryValidationResult(TemplateEntryValidationStatus status, String message) {
+        this.status = status;
+        this.message = message;
+    }
 }
@@ -0,0 +1,5 @@
+package com.vmware.gerrit.plugins.commitvalidator.entities;
+
+public enum UnsafePatternPolicy {
+    WARN, REJECT
+}
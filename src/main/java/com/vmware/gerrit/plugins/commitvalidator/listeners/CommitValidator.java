@@ -2,37 +2,72 @@ package com.vmware.gerrit.plugins.commitvalidator.listeners;
 
 import com.google.common.collect.ImmutableList;
 import com.google.gerrit.entities.Project;
-import com.google.gerrit.extensions.api.GerritApi;
 import com.google.gerrit.extensions.restapi.RestApiException;
-import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.events.CommitReceivedEvent;
+import com.google.gerrit.server.git.GitRepositoryManager;
 import com.google.gerrit.server.git.validators.CommitValidationException;
 import com.google.gerrit.server.git.validators.CommitValidationListener;
 import com.google.gerrit.server.git.validators.CommitValidationMessage;
 import com.google.inject.Inject;
+import com.vmware.gerrit.plugins.commitvalidator.cache.PushContext;
+import com.vmware.gerrit.plugins.commitvalidator.cache.PushContextCache;
+import com.vmware.gerrit.plugins.commitvalidator.cache.SkipPrincipalIndex;
+import com.vmware.gerrit.plugins.commitvalidator.cache.ValidatedCommitCache;
 import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.config.ConfigSnapshot;
 import com.vmware.gerrit.plugins.commitvalidator.entities.*;
+import com.vmware.gerrit.plugins.commitvalidator.utils.CommitMessage;
 import com.vmware.gerrit.plugins.commitvalidator.utils.GerritUtils;
+import com.vmware.gerrit.plugins.commitvalidator.utils.JiraEndpointRegistry;
 import com.vmware.gerrit.plugins.commitvalidator.utils.JiraUtils;
+import com.vmware.gerrit.plugins.commitvalidator.utils.PatternGuard;
+import com.vmware.gerrit.plugins.commitvalidator.utils.ValidationDeadline;
 import lombok.extern.slf4j.Slf4j;
 import net.rcarz.jiraclient.JiraException;
 import org.apache.commons.lang.StringUtils;
-
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class CommitValidator implements CommitValidationListener {
+    private static final Pattern BOOLEAN_PATTERN = Pattern.compile("true|false", Pattern.CASE_INSENSITIVE);
+    // Maximum number of commits of a push whose endpoint values are resolved up front
+    private static final int MAX_PREFETCHED_COMMITS = 1000;
 
     @Inject
-    protected GerritApi gerritApi;
+    private CommitValidatorConfig pluginConfig;
+    @Inject
+    private GerritUtils gerritUtils;
+    @Inject
+    private SkipPrincipalIndex skipPrincipalIndex;
+    @Inject
+    private JiraEndpointRegistry jiraEndpointRegistry;
+    @Inject
+    private PushContextCache pushContextCache;
     @Inject
-    private PluginConfigFactory pluginConfigFactory;
+    private ValidatedCommitCache validatedCommitCache;
+    @Inject
+    private GitRepositoryManager repoManager;
 
     @Override
     public List<CommitValidationMessage> onCommitReceived(CommitReceivedEvent receiveEvent)
@@ -41,28 +76,36 @@ public class CommitValidator implements CommitValidationListener {
         // Read patchset values
         String projectName = receiveEvent.project.getName();
         Project.NameKey projectNameKey = receiveEvent.project.getNameKey();
-        // TODO: find a better way to handle branch names
-        String branchName = receiveEvent.getBranchNameKey().branch().replaceFirst("refs/heads/", "");
-        String commitMessageBody = receiveEvent.commit.getFullMessage();
-        String commitSubject = receiveEvent.commit.getShortMessage();
+        String refName = receiveEvent.getBranchNameKey().branch();
         String commit = receiveEvent.commit.getId().toString();
-        String committer = receiveEvent.commit.getCommitterIdent().getEmailAddress().split("@")[0];
-        String author = receiveEvent.commit.getAuthorIdent().getEmailAddress().split("@")[0];
+        PersonIdent committerIdent = receiveEvent.commit.getCommitterIdent();
+        PersonIdent authorIdent = receiveEvent.commit.getAuthorIdent();
+        String committer = committerIdent.getEmailAddress();
+        String author = authorIdent.getEmailAddress();
 
-        // Get plugin configuration
-        CommitValidatorConfig pluginConfig = getPluginConfig();
+        // All commits of a push share one context, so the rules and skip decisions are only
+        // derived once per push. Use the same config snapshot for the whole push so that a
+        // concurrent config reload cannot mix two versions
+        PushContext push = pushContextCache.get(receiveEvent.command, () -> new PushContext(pluginConfig.getSnapshot()));
+        ConfigSnapshot snapshot = push.getSnapshot();
 
         // Fetch Project rules
         ProjectRules projectRules = null;
-        try {
-            projectRules = pluginConfig.getProjectRules(projectNameKey, branchName);
-        } catch (Exception e) {
-            log.warn(
-                    "Project: {}, commit: {} - skipping the commit validation as there is an error while reading the validation rules from plugin config: {}",
-                    projectName, commit, e.getMessage());
-
-            // Do not block if there are config issues
-            return ImmutableList.of();
+        if (push.isProjectRulesLoaded()) {
+            projectRules = push.getProjectRules();
+        } else {
+            try {
+                projectRules = pluginConfig.getProjectRules(projectNameKey, refName);
+            } catch (Exception e) {
+                log.warn(
+                        "Project: {}, commit: {} - skipping the commit validation as there is an error while reading the validation rules from plugin config: {}",
+                        projectName, commit, e.getMessage());
+
+                // Do not block if there are config issues
+                return ImmutableList.of();
+            }
+            push.setProjectRules(projectRules);
+            push.setProjectRulesLoaded(true);
         }
 
         // Skip the validation if project is not configured with any rules
@@ -80,17 +123,23 @@ public class CommitValidator implements CommitValidationListener {
             return ImmutableList.of();
         }
 
-        // Skip the validation if project is configured to skip validation for this author/committer
-        GerritUtils gerritUtils = new GerritUtils(gerritApi);
+        // Skip the validation if project is configured to skip validation for this author/committer.
+        // The author and committer are resolved to their accounts by email, and checked against the
+        // account ids and group UUIDs of the skip lists using their cached effective groups.
         try {
             // For Author
-            log.info("Project: {}, commit: {}, author: {} - checking skip eligibility for Author with config: {}", projectName, commit, author,projectRules.getSkipTemplateValidationForAuthors());
-            if (!projectRules.getSkipTemplateValidationForAuthors().isEmpty()) {
-                List<String> skipValidationUsers = gerritUtils.getAllUsers(projectRules.getSkipTemplateValidationForAuthors());
-                log.info("Project: {}, commit: {}, author: {} - skip eligible users {}", projectName, commit, author, skipValidationUsers.toString());
-                boolean skipValidation = skipValidationUsers.contains(author);
-
-                if (skipValidation) {
+            SkipPrincipals authorSkipPrincipals = skipPrincipalIndex.get(projectRules.getSkipTemplateValidationForAuthors());
+            Optional<IdentifiedUser> authorUser = Optional.empty();
+            if (!authorSkipPrincipals.isEmpty()) {
+                Boolean authorSkipped = push.getAuthorSkips().get(author);
+                if (authorSkipped == null) {
+                    log.debug("Project: {}, commit: {}, author: {} - checking skip eligibility for Author with config: {}",
+                            projectName, commit, author, authorSkipPrincipals);
+                    authorUser = gerritUtils.getUser(authorIdent);
+                    authorSkipped = authorUser.isPresent() && GerritUtils.isAnyOf(authorUser.get(), authorSkipPrincipals);
+                    push.getAuthorSkips().put(author, authorSkipped);
+                }
+                if (authorSkipped) {
                     log.info("Project: {}, commit: {}, author: {} - Skipping validation for this commit as Author is in skip list in the plugin config",
                             projectName, commit, author);
                     return ImmutableList.of();
@@ -98,30 +147,35 @@ public class CommitValidator implements CommitValidationListener {
             }
 
             // For Committer
-            log.info("Project: {}, commit: {}, committer: {} - checking skip eligibility for Committer with config: {}", projectName, commit, author,projectRules.getSkipTemplateValidationForCommitters());
-            if (!projectRules.getSkipTemplateValidationForCommitters().isEmpty()) {
-                List<String> skipValidationUsers = gerritUtils.getAllUsers(projectRules.getSkipTemplateValidationForCommitters());
-                log.info("Project: {}, commit: {}, committer: {} - skip eligible users {}", projectName, commit, committer, skipValidationUsers.toString());
-                boolean skipValidation = skipValidationUsers.contains(committer);
-
-
-                if (skipValidation) {
+            SkipPrincipals committerSkipPrincipals = skipPrincipalIndex.get(projectRules.getSkipTemplateValidationForCommitters());
+            if (!committerSkipPrincipals.isEmpty()) {
+                Boolean committerSkipped = push.getCommitterSkips().get(committer);
+                if (committerSkipped == null) {
+                    log.debug("Project: {}, commit: {}, committer: {} - checking skip eligibility for Committer with config: {}",
+                            projectName, commit, committer, committerSkipPrincipals);
+                    Optional<IdentifiedUser> committerUser = committer.equalsIgnoreCase(author) && authorUser.isPresent()
+                            ? authorUser
+                            : gerritUtils.getUser(committerIdent);
+                    committerSkipped = committerUser.isPresent()
+                            && GerritUtils.isAnyOf(committerUser.get(), committerSkipPrincipals);
+                    push.getCommitterSkips().put(committer, committerSkipped);
+                }
+                if (committerSkipped) {
                     log.info("Project: {}, commit: {}, committer: {} - Skipping validation for this commit as Committer is in skip list in the plugin config",
                             projectName, commit, committer);
                     return ImmutableList.of();
                 }
-
             }
         } catch (RestApiException e) {
-            // TODO: handle it
-            e.printStackTrace();
+            log.warn("Project: {}, commit: {} - unable to resolve the skip lists, validating the commit: {}",
+                    projectName, commit, e.getMessage());
         }
 
         log.info("Project: {}, commit: {} - validating the commit validation rules...",
                 projectName, commit);
 
         // Get commit template for this project
-        CommitTemplate commitTemplate = pluginConfig.getCommitTemplate(projectRules.getCommitTemplate());
+        CommitTemplate commitTemplate = snapshot.getCommitTemplate(projectRules.getCommitTemplate());
 
         // Skip the validation if no commit template is configured for this project or
         // configured template definition is not available in the plugin config
@@ -132,81 +186,87 @@ public class CommitValidator implements CommitValidationListener {
             return ImmutableList.of();
         }
 
-        // Get mandatory entries from configured template
-        List<TemplateEntry> mandatoryTemplateEntries = commitTemplate.getMandatoryEntry();
-
-        // Get lines from commit message body
-        String[] messageBodyLines = parseCommitMessage(commitMessageBody);
-
-        // Validate whether all template mandatory entries rules are fullfilled by the
-        // commit message and collect all validation error entries.
-        List<MessageEntry> validationErrors = mandatoryTemplateEntries.parallelStream().filter(entry -> {
-            // Ignore the entry check if both key and value are not present in template
-            // entry definition
-
-            return !(StringUtils.isEmpty(entry.getKey()) && StringUtils.isEmpty(entry.getValue()));
-        }).map(entry -> {
-            MessageEntry messageEntry = new MessageEntry();
-            if (entry.getKind() == TemplateEntryKind.KEY_VAL) {
-                messageEntry.setEntryName(entry.getKey());
-            } else {
-                messageEntry.setEntryName(entry.getName());
+        // A commit validated before against the same template and config, e.g. when it is pushed
+        // to another branch, gets the same outcome without calling any endpoint. So does a commit
+        // with the same message, author and committer, e.g. a new patch set only changing files.
+        String validatedCommitKey = ValidatedCommitCache.key(projectNameKey, receiveEvent.commit,
+                projectRules.getCommitTemplate(), snapshot.getFingerprint());
+        String validatedMessageKey = ValidatedCommitCache.messageKey(projectNameKey, receiveEvent.commit,
+                projectRules.getCommitTemplate(), snapshot.getFingerprint());
+        String knownOutcome = validatedCommitCache.getIfPresent(validatedCommitKey);
+        if (knownOutcome == null) {
+            knownOutcome = validatedCommitCache.getIfPresent(validatedMessageKey);
+        }
+        if (knownOutcome != null) {
+            log.info("Project: {}, commit: {} - the commit was already validated, accepted: {}",
+                    projectName, commit, knownOutcome.isEmpty());
+            if (knownOutcome.isEmpty()) {
+                return ImmutableList.of();
             }
+            throw new CommitValidationException(Constants.MESSAGE_VALIDATION_EXCEPTION,
+                    ImmutableList.of(new CommitValidationMessage(knownOutcome, true)));
+        }
 
-            messageEntry.setKind(entry.getKind());
-            messageEntry.setEntryType(entry.getType());
-            messageEntry.setExample(entry.getExampleValue());
-
-            // Extract the values for the template entry based on its kind
-            TemplateEntryKind entryKind = entry.getKind();
+        // Extract the values of all template mandatory entries from the commit message, unless
+        // that was already done while resolving the endpoint values of the push
+        ExtractedMessage extractedMessage = push.getExtractedMessages().remove(receiveEvent.commit);
+        if (extractedMessage == null) {
+            extractedMessage = extractMessage(snapshot, commitTemplate, receiveEvent.commit);
+        }
+        List<MessageEntry> messageEntries = extractedMessage.getMessageEntries();
+
+        // Resolve all issues referenced by the commits of this push up front with one batched
+        // query per endpoint, so that validating the individual values below is answered from
+        // the issue cache. This has its own time budget, not the one of this commit.
+        if (!push.isEndpointValuesPrefetched()) {
+            push.setEndpointValuesPrefetched(true);
+            prefetchPushEndpointValues(receiveEvent, push, commitTemplate, messageEntries);
+        }
 
-            if (entryKind == TemplateEntryKind.KEY_VAL) {
-                // Extract value from matching key-value pair
-                String keyValue = extractValueFromMatchingKeyValPair(messageBodyLines, entry.getKey());
+        // Bound the total validation time of the commit
+        ValidationDeadline deadline = ValidationDeadline.after(snapshot.getCommitTimeout());
+        if (extractedMessage.isDegraded()) {
+            deadline.markDegraded();
+        }
 
-                // If no key is found, return with missing entry message
-                if (keyValue == null) {
-                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.MISSING_KEY);
-                    return messageEntry;
-                } else if (keyValue.isEmpty()) {
-                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.MISSING_VALUE);
-                    return messageEntry;
-                }
+        // Resolve the issues of this commit which are not cached yet, e.g. as the commits of the
+        // push could not be listed
+        prefetchEndpointValues(snapshot, messageEntries, deadline);
 
-                // Set actual value to message
-                messageEntry.setActualValues(Arrays.asList(keyValue));
+        // Validate whether all template mandatory entries rules are fullfilled by the
+        // commit message and collect all validation error entries. Blocking endpoint calls are
+        // already bounded and run on the validation executor, the rest is cheap CPU work.
+        List<MessageEntry> validationErrors = messageEntries.stream().map(messageEntry -> {
+            TemplateEntry entry = messageEntry.getTemplateEntry();
+
+            // Entries with missing key or value already have their status
+            if (messageEntry.getEntryValidationStatus() != null) {
+                return messageEntry;
+            }
 
+            if (entry.getKind() == TemplateEntryKind.KEY_VAL) {
                 // Validate the value and set to message
-                TemplateEntryValidationResult validationResult = validateKeyValPairEntryValue(entry, keyValue);
+                String keyValue = messageEntry.getActualValues().get(0);
+                TemplateEntryValidationResult validationResult = validateKeyValPairEntryValue(snapshot, entry, keyValue, deadline);
                 messageEntry.setEntryValidationStatus(validationResult.getStatus());
                 messageEntry.setValidationMessage(validationResult.getMessage());
+                messageEntry.setEndpointDependent(validationResult.isEndpointDependent());
             } else {
-                // Extract matching values
-                List<String> matchingValues = new ArrayList<>();
-                if (entryKind == TemplateEntryKind.STR_SUB) {
-                    matchingValues.addAll(extractMatchingStrings(commitSubject, entry.getValue()));
-                } else if (entryKind == TemplateEntryKind.STR_BODY) {
-                    matchingValues.addAll(extractMatchingStrings(commitMessageBody, entry.getValue()));
-                }
-
-                // Return if no matching values are found
-                if (matchingValues.isEmpty()) {
-                    messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.MISSING_VALUE);
-                    return messageEntry;
-                }
-
-                // Set actual value to message
-                messageEntry.setActualValues(matchingValues);
-
+                List<String> matchingValues = messageEntry.getActualValues();
                 log.info(
                         "Project: {}, commit: {}, matching values:{}", projectName, commit, matchingValues);
 
                 // Validate all matching values and extract invalid values
-                List<TemplateEntryValidationResult> invalidValuesFromMatched = matchingValues.stream().map(s -> {
+                List<TemplateEntryValidationResult> validationResults = matchingValues.stream().map(s -> {
                     log.info(
                             "Project: {}, commit: {}, validating the value:{}", projectName, commit, s);
-                    return validateStringEntry(entry, s);
-                }).filter(validationResult -> validationResult.getStatus() == TemplateEntryValidationStatus.INVALID_VALUE).collect(Collectors.toList());
+                    return validateStringEntry(snapshot, entry, s, deadline);
+                }).collect(Collectors.toList());
+                List<TemplateEntryValidationResult> invalidValuesFromMatched = validationResults.stream()
+                        .filter(validationResult -> validationResult.getStatus() == TemplateEntryValidationStatus.INVALID_VALUE)
+                        .collect(Collectors.toList());
+                messageEntry.setEndpointDependent(validationResults.stream()
+                        .anyMatch(TemplateEntryValidationResult::isEndpointDependent));
 
                 // Set the validation status of entry as INVALID if at least
                 // one value is invalid
@@ -227,27 +287,283 @@ public class CommitValidator implements CommitValidationListener {
             return messageEntry.getEntryValidationStatus() != TemplateEntryValidationStatus.VALID_VALUE;
         }).collect(Collectors.toList());
 
+        // Outcomes decided by a fallback may differ the next time, so they are not remembered
+        boolean remember = !deadline.isDegraded();
+
         // Construct the error message if there are validation errors
         if (!validationErrors.isEmpty()) {
             String errorMessage = getMissingentriesMessage(validationErrors);
 
+            // A rejection by an endpoint, e.g. of an issue which is not created or not in an
+            // allowed status yet, may be fixed without changing the commit, so only rejections
+            // of the message alone are remembered
+            boolean endpointRejected = validationErrors.stream().anyMatch(MessageEntry::isEndpointDependent);
+            if (remember && !endpointRejected) {
+                validatedCommitCache.putRejected(validatedCommitKey, errorMessage);
+                validatedCommitCache.putRejected(validatedMessageKey, errorMessage);
+            }
+
             // Throw the validation error. This gets displayed in user's console/screen.
             CommitValidationMessage m = new CommitValidationMessage(errorMessage, true);
             throw new CommitValidationException(Constants.MESSAGE_VALIDATION_EXCEPTION, ImmutableList.of(m));
         }
 
-        // No errors. Allow further processing of the change by Gerrit.
+        // No errors. Allow further processing of the change by Gerrit. Likewise, an issue may
+        // leave its allowed statuses, so acceptances which checked an endpoint are not remembered.
+        boolean endpointDependent = messageEntries.stream().anyMatch(MessageEntry::isEndpointDependent);
+        if (remember && !endpointDependent) {
+            validatedCommitCache.putAccepted(validatedCommitKey);
+            validatedCommitCache.putAccepted(validatedMessageKey);
+        }
         return ImmutableList.of();
     }
 
+    /**
+     * Extracts the values of all mandatory entries of given template from the message of given
+     * commit, reading it from the raw commit buffer
+     *
+     * @param snapshot
+     * @param commitTemplate
+     * @param commit
+     * @return
+     */
+    private ExtractedMessage extractMessage(ConfigSnapshot snapshot, CommitTemplate commitTemplate, RevCommit commit) {
+        CommitMessage commitMessage = CommitMessage.parse(commit, snapshot.getMaxMessageLength());
+        List<MessageEntry> messageEntries = extractMessageEntries(snapshot, commitTemplate, commitMessage);
+
+        // Only the first and last lines of an overlong message are validated, and values are
+        // only rejected while being extracted if their pattern was abandoned or their entry is
+        // misconfigured
+        boolean degraded = commitMessage.isTruncated() || messageEntries.stream().anyMatch(messageEntry ->
+                messageEntry.getEntryValidationStatus() == TemplateEntryValidationStatus.INVALID_VALUE);
+        return new ExtractedMessage(ImmutableList.copyOf(messageEntries), degraded);
+    }
+
+    /**
+     * Extracts the values of all mandatory entries of given template from the commit message
+     *
+     * @param snapshot
+     * @param commitTemplate
+     * @param commitMessage
+     * @return
+     */
+    private List<MessageEntry> extractMessageEntries(ConfigSnapshot snapshot, CommitTemplate commitTemplate,
+                                                     CommitMessage commitMessage) {
+        // Find the values of all subject and all body entries with one scan of the subject and
+        // one of the body
+        Map<String, List<String>> subjectMatches = commitTemplate.getSubjectMatcher()
+                .findAll(commitMessage.getSubject().trim(), snapshot.getPatternTimeout());
+        Map<String, List<String>> bodyMatches = commitTemplate.getBodyMatcher()
+                .findAll(commitMessage.getTrimmedMessage(), snapshot.getPatternTimeout());
+
+        return commitTemplate.getMandatoryEntry().stream().filter(entry -> {
+            // Ignore the entry check if both key and value are not present in template
+            // entry definition, unless the definition is invalid
+
+            return entry.isMisconfigured()
+                    || !(StringUtils.isEmpty(entry.getKey()) && StringUtils.isEmpty(entry.getValue()));
+        }).map(entry -> extractEntryValues(entry, commitMessage, subjectMatches, bodyMatches))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Extracts the values of given template entry from the commit message. If the key or
+     * value is missing, the validation status of returned message entry is already set.
+     *
+     * @param entry
+     * @param commitMessage
+     * @param subjectMatches matches of the subject entry patterns, keyed by entry name
+     * @param bodyMatches matches of the body entry patterns, keyed by entry name
+     * @return
+     */
+    private MessageEntry extractEntryValues(TemplateEntry entry, CommitMessage commitMessage,
+                                            Map<String, List<String>> subjectMatches,
+                                            Map<String, List<String>> bodyMatches) {
+        MessageEntry messageEntry = new MessageEntry();
+        messageEntry.setTemplateEntry(entry);
+        if (entry.getKind() == TemplateEntryKind.KEY_VAL) {
+            messageEntry.setEntryName(entry.getKey());
+        } else {
+            messageEntry.setEntryName(entry.getName());
+        }
+
+        messageEntry.setKind(entry.getKind());
+        messageEntry.setEntryType(entry.getType());
+        messageEntry.setExample(entry.getExampleValue());
+
+        // Reject the commit if the definition of the entry is invalid
+        if (entry.isMisconfigured()) {
+            messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.INVALID_VALUE);
+            messageEntry.setValidationMessage(String.format("Template entry '%s' is misconfigured: %s",
+                    entry.getName(), entry.getConfigError()));
+            return messageEntry;
+        }
+
+        // Extract the values for the template entry based on its kind
+        TemplateEntryKind entryKind = entry.getKind();
+
+        if (entryKind == TemplateEntryKind.KEY_VAL) {
+            // Extract value from matching key-value pair
+            String keyValue = commitMessage.getKeyValue(entry.getKey());
+
+            // If no key is found, return with missing entry message
+            if (keyValue == null) {
+                messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.MISSING_KEY);
+                return messageEntry;
+            } else if (keyValue.isEmpty()) {
+                messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.MISSING_VALUE);
+                return messageEntry;
+            }
+
+            // Set actual value to message
+            messageEntry.setActualValues(Arrays.asList(keyValue));
+        } else {
+            // Extract matching values
+            List<String> matches = Collections.emptyList();
+            if (entryKind == TemplateEntryKind.STR_SUB) {
+                matches = subjectMatches.getOrDefault(entry.getName(), Collections.emptyList());
+            } else if (entryKind == TemplateEntryKind.STR_BODY) {
+                matches = bodyMatches.getOrDefault(entry.getName(), Collections.emptyList());
+            }
+
+            // Reject the entry if its pattern was abandoned for taking too long
+            if (matches == null) {
+                messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.INVALID_VALUE);
+                messageEntry.setValidationMessage(String.format("Matching '%s' took too long", entry.getValue()));
+                return messageEntry;
+            }
+            List<String> matchingValues = new ArrayList<>(matches);
+
+            // Return if no matching values are found
+            if (matchingValues.isEmpty()) {
+                messageEntry.setEntryValidationStatus(TemplateEntryValidationStatus.MISSING_VALUE);
+                return messageEntry;
+            }
+
+            // Set actual value to message
+            messageEntry.setActualValues(matchingValues);
+        }
+        return messageEntry;
+    }
+
+    /**
+     * Resolves the endpoint values of all new commits of the push of given commit with one
+     * batched query per endpoint. The commits are those reachable from the new tip of the ref
+     * but not from its old tip, or from the destination branch for a new change ref. If they
+     * cannot be listed, only the values of given commit are resolved.
+     * <p>
+     * Listing the commits and resolving their values is bounded by a time budget of its own,
+     * as long as the one of a single commit. The entry values extracted from the other commits
+     * are kept in the push context for their own validation.
+     *
+     * @param receiveEvent
+     * @param push
+     * @param commitTemplate
+     * @param messageEntries entries of given commit
+     */
+    private void prefetchPushEndpointValues(CommitReceivedEvent receiveEvent, PushContext push,
+                                            CommitTemplate commitTemplate, List<MessageEntry> messageEntries) {
+        ConfigSnapshot snapshot = push.getSnapshot();
+        ValidationDeadline deadline = ValidationDeadline.after(snapshot.getCommitTimeout());
+        ReceiveCommand command = receiveEvent.command;
+        boolean validatesEndpoints = commitTemplate.getMandatoryEntry().stream()
+                .anyMatch(TemplateEntry::isValidateValueAgainstEndpoint);
+        if (!validatesEndpoints || command == null || command.getNewId().equals(ObjectId.zeroId())) {
+            prefetchEndpointValues(snapshot, messageEntries, deadline);
+            return;
+        }
+
+        List<MessageEntry> pushEntries = new ArrayList<>(messageEntries);
+        try (Repository repo = repoManager.openRepository(receiveEvent.project.getNameKey());
+             RevWalk walk = new RevWalk(repo)) {
+            ObjectId base = command.getOldId();
+            if (base.equals(ObjectId.zeroId())) {
+                Ref destination = repo.exactRef(receiveEvent.getBranchNameKey().branch());
+                base = destination == null ? null : destination.getObjectId();
+            }
+            if (base == null) {
+                prefetchEndpointValues(snapshot, messageEntries, deadline);
+                return;
+            }
+
+            walk.markStart(walk.parseCommit(command.getNewId()));
+            walk.markUninteresting(walk.parseCommit(base));
+            int commits = 0;
+            for (RevCommit pushCommit : walk) {
+                if (commits == MAX_PREFETCHED_COMMITS || deadline.isExpired()) {
+                    break;
+                }
+                commits++;
+                if (!pushCommit.equals(receiveEvent.commit)) {
+                    ExtractedMessage extractedMessage = extractMessage(snapshot, commitTemplate, pushCommit);
+                    push.getExtractedMessages().put(pushCommit.copy(), extractedMessage);
+                    pushEntries.addAll(extractedMessage.getMessageEntries());
+                }
+            }
+            log.debug("Project: {}, ref: {} - resolving the endpoint values of {} commits of the push",
+                    receiveEvent.project.getName(), command.getRefName(), commits);
+        } catch (IOException e) {
+            log.warn("Project: {}, ref: {} - unable to list the commits of the push, resolving the endpoint values per commit: {}",
+                    receiveEvent.project.getName(), command.getRefName(), e.getMessage());
+            pushEntries = messageEntries;
+        }
+        prefetchEndpointValues(snapshot, pushEntries, deadline);
+    }
+
+    /**
+     * Collects the values of all entries which are validated against a Jira endpoint and
+     * resolves them with one batched query per endpoint.
+     *
+     * @param snapshot
+     * @param messageEntries
+     * @param deadline
+     */
+    private void prefetchEndpointValues(ConfigSnapshot snapshot, List<MessageEntry> messageEntries,
+                                        ValidationDeadline deadline) {
+        Map<String, Set<String>> issueIdsByEndpoint = new HashMap<>();
+        for (MessageEntry messageEntry : messageEntries) {
+            TemplateEntry entry = messageEntry.getTemplateEntry();
+            if (messageEntry.getEntryValidationStatus() != null
+                    || !entry.isValidateValueAgainstEndpoint()
+                    || entry.getEndpointType() != EndpointType.JIRA
+                    || entry.getType() != TemplateEntryType.STRING) {
+                continue;
+            }
+
+            for (String value : messageEntry.getActualValues()) {
+                // Values not matching the entry pattern are rejected without asking the endpoint
+                try {
+                    if (entry.getValuePattern() != null
+                            && !PatternGuard.matches(entry.getValuePattern(), value.trim(), snapshot.getPatternTimeout())) {
+                        continue;
+                    }
+                } catch (PatternTimeoutException e) {
+                    continue;
+                }
+                issueIdsByEndpoint.computeIfAbsent(entry.getEndpointName(), name -> new LinkedHashSet<>())
+                        .add(toIssueId(value));
+            }
+        }
+
+        issueIdsByEndpoint.forEach((endpointName, issueIds) -> {
+            JiraEndpoint jiraEndpoint = snapshot.getJiraEndpoint(endpointName);
+            if (jiraEndpoint != null) {
+                jiraEndpointRegistry.get(endpointName, jiraEndpoint).prefetch(issueIds, deadline);
+            }
+        });
+    }
+
     /**
      * Validates the key value pair value based on its type
      *
+     * @param snapshot
      * @param entry
      * @param keyValue
+     * @param deadline
      * @return
      */
-    private TemplateEntryValidationResult validateKeyValPairEntryValue(TemplateEntry entry, String keyValue) {
+    private TemplateEntryValidationResult validateKeyValPairEntryValue(ConfigSnapshot snapshot, TemplateEntry entry,
+                                                                       String keyValue, ValidationDeadline deadline) {
         switch (entry.getType()) {
             case BOOLEAN:
                 return validateBoolEntry(keyValue);
@@ -255,7 +571,7 @@ public class CommitValidator implements CommitValidationListener {
                 return validateIntEntry(keyValue);
             case STRING:
             default:
-                return validateStringEntry(entry, keyValue);
+                return validateStringEntry(snapshot, entry, keyValue, deadline);
         }
     }
 
@@ -266,8 +582,7 @@ public class CommitValidator implements CommitValidationListener {
      * @return
      */
     private TemplateEntryValidationResult validateBoolEntry(String entryActualValue) {
-        Pattern pattern = Pattern.compile("true|false", Pattern.CASE_INSENSITIVE);
-        Matcher matcher = pattern.matcher(entryActualValue);
+        Matcher matcher = BOOLEAN_PATTERN.matcher(entryActualValue);
         if (!matcher.find()) {
             return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, "Not a boolean value");
         }
@@ -292,19 +607,25 @@ public class CommitValidator implements CommitValidationListener {
     /**
      * Validates string entry value as per entry value pattern
      *
+     * @param snapshot
      * @param entry
      * @param entryActualValue
+     * @param deadline
      * @return
      */
-    private TemplateEntryValidationResult validateStringEntry(TemplateEntry entry, String entryActualValue) {
+    private TemplateEntryValidationResult validateStringEntry(ConfigSnapshot snapshot, TemplateEntry entry,
+                                                              String entryActualValue, ValidationDeadline deadline) {
         TemplateEntryValidationResult result = new TemplateEntryValidationResult();
 
-        // Validate the value as per pattern
-        Pattern valPattern = Pattern.compile(entry.getValue().trim());
-        Matcher valMatcher = valPattern.matcher(entryActualValue.trim());
-
-        if (!valMatcher.matches()) {
-            return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, String.format("No values matching '%s' format", entry.getValue()));
+        // Validate the value as per pattern, if the entry defines one
+        Pattern valPattern = entry.getValuePattern();
+        try {
+            if (valPattern != null && !PatternGuard.matches(valPattern, entryActualValue.trim(), snapshot.getPatternTimeout())) {
+                return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, String.format("No values matching '%s' format", entry.getValue()));
+            }
+        } catch (PatternTimeoutException e) {
+            deadline.markDegraded();
+            return new TemplateEntryValidationResult(TemplateEntryValidationStatus.INVALID_VALUE, e.getMessage());
         }
 
         log.info(">>validate value against endpoint {}", entry.isValidateValueAgainstEndpoint());
@@ -321,7 +642,7 @@ public class CommitValidator implements CommitValidationListener {
             switch (entry.getEndpointType()) {
                 case JIRA:
                     log.info(">>validating based against Jira");
-                    return validateAgainstJira(entry, entryActualValue);
+                    return validateAgainstJira(snapshot, entry, entryActualValue, deadline);
                 default:
                     log.warn("Unable to validate the value of template entry {} against endpoint as endpoint type {} is unknown", entry.getName(), entry.getEndpointType());
                     // Return as Valid as we do not know what to validate here
@@ -334,26 +655,30 @@ public class CommitValidator implements CommitValidationListener {
     /**
      * Validates the given value against endpoint
      *
+     * @param snapshot
      * @param entry
      * @param value
+     * @param deadline
      * @return
      */
-    private TemplateEntryValidationResult validateAgainstJira(TemplateEntry entry, String value) {
+    private TemplateEntryValidationResult validateAgainstJira(ConfigSnapshot snapshot, TemplateEntry entry,
+                                                              String value, ValidationDeadline deadline) {
         TemplateEntryValidationResult result = new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "");
 
-        // Remove any unwanted braces from Jira issue ID
-        // In general this is not needed but to handle VMware use cases, this is added.
-        String actualValue = value.replaceAll("[\\[\\]]", "");
+        String actualValue = toIssueId(value);
 
-        // Get plugin configuration
-        CommitValidatorConfig pluginConfig = getPluginConfig();
-        JiraEndpoint jiraEndpoint = pluginConfig.getJiraEndpointConfig(entry.getEndpointName());
-        JiraUtils jiraUtils = new JiraUtils(jiraEndpoint.getUrl(), jiraEndpoint.getUsername(), jiraEndpoint.getPassword());
+        JiraEndpoint jiraEndpoint = snapshot.getJiraEndpoint(entry.getEndpointName());
+        if (jiraEndpoint == null) {
+            log.warn("Unable to validate the value of template entry {} against endpoint as Jira endpoint {} is not configured",
+                    entry.getName(), entry.getEndpointName());
+            return new TemplateEntryValidationResult(TemplateEntryValidationStatus.VALID_VALUE, "No endpoint details in config");
+        }
+        JiraUtils jiraUtils = jiraEndpointRegistry.get(entry.getEndpointName(), jiraEndpoint);
+        result.setEndpointDependent(true);
         boolean isJiraValid = false;
         try {
-            isJiraValid = jiraUtils.isIssueIdValid(actualValue, entry.getAllowedStatuses());
+            isJiraValid = jiraUtils.isIssueIdValid(actualValue, entry.getAllowedStatuses(), deadline);
         } catch (InvalidEntryException | JiraException e) {
-            // TODO: Handle Jira down issues
             result.setStatus(TemplateEntryValidationStatus.INVALID_VALUE);
             result.setMessage(e.getMessage());
             return result;
@@ -367,76 +692,27 @@ public class CommitValidator implements CommitValidationListener {
     }
 
     /**
-     * Builds the error message when mandatory template entries are missing
-     *
-     * @return
-     */
-    private String getMissingentriesMessage(List<MessageEntry> validationMessageEntries) {
-        Message validationMsg = new Message(validationMessageEntries);
-
-        return String.format("%n%s%n\tINVALID COMMIT\t%n%s%n%s%n%s%n%n%s%n%n%s", Constants.LINE_BREAK_ASTERISK,
-                Constants.LINE_BREAK_ASTERISK, Constants.MESSAGE_MISSING_OR_INVALID_ENTRIES,
-                Constants.LINE_BREAK_HYPHEN, validationMsg.toString(), Constants.LINE_BREAK_ASTERISK);
-    }
-
-    /**
-     * Extracts the value for given key if matching key-val pair is found in commit message body.
-     * If no value is found for give key, an empty string is returned.
-     * And if no matching key itself is not found, null is returned.
-     *
-     * @param commitMessageLines
-     * @param key
-     * @return
-     */
-    private String extractValueFromMatchingKeyValPair(String[] commitMessageLines, String key) {
-        return Arrays.stream(commitMessageLines).filter(message -> {
-            return message.trim().startsWith(key);
-        }).map(message -> {
-            String[] keyValPair = message.split(":");
-
-            if (keyValPair.length <= 1) {
-                // No value is available for given key
-                // Return empty string
-                return "";
-            }
-            return keyValPair[1].trim();
-        }).findFirst().orElse(null);
-    }
-
-    /**
-     * Extracts the matching string from given text
+     * Converts a matched value into a Jira issue ID
      *
-     * @param inputStr
-     * @param matchPattern
+     * @param value
      * @return
      */
-    private List<String> extractMatchingStrings(String inputStr, String matchPattern) {
-        Pattern pattern = Pattern.compile(matchPattern.trim());
-        Matcher matcher = pattern.matcher(inputStr.trim());
-
-        List<String> matchingStrs = new ArrayList<>();
-        while (matcher.find()) {
-            matchingStrs.add(matcher.group());
-        }
-        return matchingStrs;
+    private String toIssueId(String value) {
+        // Remove any unwanted braces from Jira issue ID
+        // In general this is not needed but to handle VMware use cases, this is added.
+        return value.replaceAll("[\\[\\]]", "");
     }
 
     /**
-     * Splits commit message into lines
+     * Builds the error message when mandatory template entries are missing
      *
-     * @param commitMessage
      * @return
      */
-    private String[] parseCommitMessage(String commitMessage) {
-        return commitMessage.split(System.getProperty("line.separator"));
-    }
+    private String getMissingentriesMessage(List<MessageEntry> validationMessageEntries) {
+        Message validationMsg = new Message(validationMessageEntries);
 
-    /**
-     * Gets plugins configuration from etc/commit-validator.config file
-     *
-     * @return
-     */
-    private CommitValidatorConfig getPluginConfig() {
-        return new CommitValidatorConfig(pluginConfigFactory);
+        return String.format("%n%s%n\tINVALID COMMIT\t%n%s%n%s%n%s%n%n%s%n%n%s", Constants.LINE_BREAK_ASTERISK,
+                Constants.LINE_BREAK_ASTERISK, Constants.MESSAGE_MISSING_OR_INVALID_ENTRIES,
+                Constants.LINE_BREAK_HYPHEN, validationMsg.toString(), Constants.LINE_BREAK_ASTERISK);
     }
 }
\ No newline at end of file
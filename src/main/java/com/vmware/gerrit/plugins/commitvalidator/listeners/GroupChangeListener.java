@@ -0,0 +1,35 @@
+package com.vmware.gerrit.plugins.commitvalidator.listeners;
+
+import com.google.gerrit.entities.AccountGroup;
+import com.google.gerrit.extensions.events.GroupIndexedListener;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.cache.ApproverIndex;
+import com.vmware.gerrit.plugins.commitvalidator.cache.GroupMembersCache;
+import com.vmware.gerrit.plugins.commitvalidator.cache.SkipPrincipalIndex;
+
+/**
+ * Evicts cached group members, resolved skip lists and approvers when a group is reindexed,
+ * which Gerrit does whenever a group or its members change.
+ */
+@Singleton
+public class GroupChangeListener implements GroupIndexedListener {
+    private final GroupMembersCache groupMembersCache;
+    private final SkipPrincipalIndex skipPrincipalIndex;
+    private final ApproverIndex approverIndex;
+
+    @Inject
+    public GroupChangeListener(GroupMembersCache groupMembersCache, SkipPrincipalIndex skipPrincipalIndex,
+                               ApproverIndex approverIndex) {
+        this.groupMembersCache = groupMembersCache;
+        this.skipPrincipalIndex = skipPrincipalIndex;
+        this.approverIndex = approverIndex;
+    }
+
+    @Override
+    public void onGroupIndexed(String uuid) {
+        groupMembersCache.evict(AccountGroup.uuid(uuid));
+        skipPrincipalIndex.invalidateAll();
+        approverIndex.invalidateAll();
+    }
+}
@@ -1,52 +1,80 @@
 package com.vmware.gerrit.plugins.commitvalidator.rules;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.gerrit.common.data.SubmitRecord;
 import com.google.gerrit.common.data.SubmitRecord.Status;
+import com.google.gerrit.entities.Account;
+import com.google.gerrit.entities.PatchSetApproval;
 import com.google.gerrit.entities.Project;
-import com.google.gerrit.extensions.api.GerritApi;
-import com.google.gerrit.extensions.common.AccountInfo;
 import com.google.gerrit.extensions.restapi.RestApiException;
-import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.query.change.ChangeData;
 import com.google.gerrit.server.rules.SubmitRule;
 import com.google.inject.Inject;
+import com.vmware.gerrit.plugins.commitvalidator.cache.ApproverIndex;
+import com.vmware.gerrit.plugins.commitvalidator.cache.GroupMembersCache;
+import com.vmware.gerrit.plugins.commitvalidator.cache.SkipPrincipalIndex;
+import com.vmware.gerrit.plugins.commitvalidator.cache.SubmitRecordCache;
 import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
 import com.vmware.gerrit.plugins.commitvalidator.entities.ProjectRules;
+import com.vmware.gerrit.plugins.commitvalidator.entities.SkipPrincipals;
+import com.vmware.gerrit.plugins.commitvalidator.entities.SubmitRecordKey;
+import com.vmware.gerrit.plugins.commitvalidator.utils.ApprovalConditions;
 import com.vmware.gerrit.plugins.commitvalidator.utils.GerritUtils;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class SubmitRules implements SubmitRule {
     @Inject
-    protected GerritApi gerritApi;
+    private CommitValidatorConfig pluginConfig;
     @Inject
-    private PluginConfigFactory pluginConfigFactory;
+    private GerritUtils gerritUtils;
+    @Inject
+    private SkipPrincipalIndex skipPrincipalIndex;
+    @Inject
+    private ApproverIndex approverIndex;
+    @Inject
+    private GroupMembersCache groupMembersCache;
+    @Inject
+    private SubmitRecordCache submitRecordCache;
 
     public Optional<SubmitRecord> evaluate(ChangeData changeData) {
         String projectName = changeData.project().get();
         Project.NameKey projectNameKey = changeData.project();
-        // TODO: find a better way to handle branch names
-        String branchName = changeData.change().getDest().branch().replaceFirst("refs/heads/", "");
+        String refName = changeData.change().getDest().branch();
         String commit = changeData.change().getId().toString();
-        GerritUtils gerritUtils = new GerritUtils(gerritApi);
 
-        // Get plugin configuration
-        CommitValidatorConfig pluginConfig = new CommitValidatorConfig(pluginConfigFactory);
+        // Submit rules are evaluated over and over for the same change state, e.g. on every change
+        // screen and query result, so the result is memoized per change revision and approvals
+        SubmitRecordKey submitRecordKey = submitRecordKey(changeData);
+        if (submitRecordKey != null) {
+            Optional<Status> cachedStatus = submitRecordCache.getIfPresent(submitRecordKey);
+            if (cachedStatus != null) {
+                return cachedStatus.isPresent() ? vote(cachedStatus.get()) : Optional.empty();
+            }
+        }
+        // Results based on a failed lookup are not remembered
+        boolean cacheable = submitRecordKey != null;
 
         // Fetch Project rules
         ProjectRules projectRules = null;
         try {
             projectRules = pluginConfig.getProjectRules(projectNameKey,
-                    branchName);
+                    refName);
         } catch (Exception e) {
             log.warn(
                     "Project: {}, commit: {} - skipping the submit rules validation as there is an error while reading the validation rules from plugin config: {}",
                     projectName, commit, e.getMessage());
+            cacheable = false;
         }
 
         // Skip the voting if project is not configured with any rules
@@ -54,92 +82,103 @@ public class SubmitRules implements SubmitRule {
             log.info(
                     "Project: {}, commit: {} - skipping the submit rules validation as the project is not configured with any validation rules",
                     projectName, commit);
-            return Optional.empty();
+            return remember(submitRecordKey, cacheable, null);
         }
 
         // Skip the voting if project is configured but not enabled for validation
         if (!projectRules.isEnabled()) {
             log.info("Project: {}, commit: {} - skipping the submit rules validation as the project is not enabled for validation",
                     projectName, commit);
-            return Optional.empty();
+            return remember(submitRecordKey, cacheable, null);
         }
 
         // Skip the voting if project is configured to skip validation for this author/committer
         try {
             // For Authors
-            if (!projectRules.getSkipTemplateValidationForAuthors().isEmpty()) {
-                List<String> skipValidationUsers = gerritUtils.getAllUsers(projectRules.getSkipTemplateValidationForAuthors());
-                boolean skipValidation = skipValidationUsers.contains(changeData.getAuthor().getEmailAddress().split("@")[0]);
-                if (skipValidation) {
+            SkipPrincipals authorSkipPrincipals = skipPrincipalIndex.get(projectRules.getSkipTemplateValidationForAuthors());
+            if (!authorSkipPrincipals.isEmpty()) {
+                Optional<IdentifiedUser> authorUser = gerritUtils.getUser(changeData.getAuthor());
+                if (authorUser.isPresent() && GerritUtils.isAnyOf(authorUser.get(), authorSkipPrincipals)) {
                     log.info("Project: {}, commit: {}, author: {} - Skipping validation for this commit as Author is in skip list in the plugin config",
                             projectName, commit, changeData.getAuthor().getName());
-                    return Optional.empty();
+                    return remember(submitRecordKey, cacheable, null);
                 }
             }
 
             // For Committers
-            if (!projectRules.getSkipTemplateValidationForCommitters().isEmpty()) {
-                List<String> skipValidationUsers = gerritUtils.getAllUsers(projectRules.getSkipTemplateValidationForCommitters());
-                boolean skipValidation = skipValidationUsers.contains(changeData.getCommitter().getEmailAddress().split("@")[0]);
-                if (skipValidation) {
+            SkipPrincipals committerSkipPrincipals = skipPrincipalIndex.get(projectRules.getSkipTemplateValidationForCommitters());
+            if (!committerSkipPrincipals.isEmpty()) {
+                Optional<IdentifiedUser> committerUser = gerritUtils.getUser(changeData.getCommitter());
+                if (committerUser.isPresent() && GerritUtils.isAnyOf(committerUser.get(), committerSkipPrincipals)) {
                     log.info("Project: {}, commit: {}, committer: {} - Skipping validation for this commit as Committer is in skip list in the plugin config",
                             projectName, commit, changeData.getCommitter().getName());
-                    return Optional.empty();
+                    return remember(submitRecordKey, cacheable, null);
                 }
             }
         } catch (RestApiException e) {
-            // TODO: handle it
-            e.printStackTrace();
+            log.warn("Project: {}, commit: {} - unable to resolve the skip lists, evaluating the submit rules: {}",
+                    projectName, commit, e.getMessage());
+            cacheable = false;
         }
 
-        if (projectRules.getAdditionalCodeReviewApprovalConditions().isEmpty()) {
+        ApprovalConditions approvalConditions = projectRules.getApprovalConditions();
+        if (approvalConditions.isEmpty()) {
             log.info(
                     "Project: {}, commit: {} - skipping the submit rules validation as the project is not configured with any additional approvers conditions",
                     projectName, commit);
-            return Optional.empty();
+            return remember(submitRecordKey, cacheable, null);
+        }
+
+        // The approvers are only resolved if one of the conditions applies to the change
+        boolean additionalApprovalRequired;
+        try {
+            additionalApprovalRequired = approvalConditions.matches(changeData, pluginConfig.getSnapshot());
+        } catch (RuntimeException e) {
+            log.warn("Project: {}, commit: {} - unable to evaluate the additional approvers conditions, requiring an additional approval: {}",
+                    projectName, commit, e.getMessage());
+            additionalApprovalRequired = true;
+            cacheable = false;
+        }
+
+        if (!additionalApprovalRequired) {
+            log.debug("Project: {}, commit: {} - skipping the submit rules validation as no additional approvers condition applies",
+                    projectName, commit);
+            return remember(submitRecordKey, cacheable, null);
         }
 
         log.info("Project: {}, commit: {} - validating the submit rules...",
                 projectName, commit);
 
-        List<String> additionalApprovalConditions = projectRules.getAdditionalCodeReviewApprovalConditions();
-
         // Validate additional approvers conditions
         try {
-            List<String> allAdditionalApprovers = gerritUtils.getAllUsers(projectRules.getAdditionalCodeReviewApprovers());
-            log.info("Project: {}, commit: {} - all additional Approvers {}", projectName, commit, allAdditionalApprovers);
+            Set<Account.Id> allAdditionalApprovers = approverIndex.get(projectRules.getAdditionalCodeReviewApprovers());
+            log.debug("Project: {}, commit: {} - {} additional Approvers", projectName, commit, allAdditionalApprovers.size());
 
-            List<String> currentCRApprovers = changeData.
+            // Approvals carry the account id, so they are matched against the resolved approvers
+            // without looking up any account
+            List<Account.Id> currentCRApprovers = changeData.
                     currentApprovals().
-                    parallelStream().
+                    stream().
                     filter(patchSetApproval -> {
                         return patchSetApproval.labelId().get().equals("Code-Review");
                     }).map(patchSetApproval -> {
-                return patchSetApproval.accountId().get();
-            }).map(accountId -> {
-                try {
-                    return gerritApi.accounts().id(accountId).get().username;
-                } catch (RestApiException e) {
-                    // TODO: handle this case
-                }
-                return null;
-            }).filter(username -> {
-                return username != null;
+                return patchSetApproval.accountId();
             }).collect(Collectors.toList());
-            log.info("Project: {}, commit: {} - current Approvers {}", projectName, commit, currentCRApprovers);
+            log.debug("Project: {}, commit: {} - current Approvers {}", projectName, commit, currentCRApprovers);
 
-            boolean additionalApprovalDone = currentCRApprovers.stream().anyMatch(element -> allAdditionalApprovers.contains(element));
+            boolean additionalApprovalDone = currentCRApprovers.stream().anyMatch(allAdditionalApprovers::contains);
             log.info("Project: {}, commit: {} - additionalApprovalDone {}", projectName, commit, additionalApprovalDone);
 
             // Vote OK if at least one additional approval is done
             if (additionalApprovalDone) {
-                return vote(Status.OK);
+                return remember(submitRecordKey, cacheable, Status.OK);
             } else {
-                return vote(Status.NOT_READY);
+                return remember(submitRecordKey, cacheable, Status.NOT_READY);
             }
 
         } catch (RestApiException e) {
-            // TODO: handle this case
+            log.warn("Project: {}, commit: {} - unable to resolve the additional approvers: {}",
+                    projectName, commit, e.getMessage());
         }
 
         // Vote OK
@@ -147,6 +186,54 @@ public class SubmitRules implements SubmitRule {
     }
 
 
+    /**
+     * Builds the key under which the submit record of given change state is memoized
+     *
+     * @param changeData
+     * @return the key or null if the project config revision cannot be read
+     */
+    private SubmitRecordKey submitRecordKey(ChangeData changeData) {
+        String projectConfigRevision;
+        try {
+            projectConfigRevision = pluginConfig.getProjectConfigRevision(changeData.project());
+        } catch (Exception e) {
+            log.warn("Project: {} - unable to read the project config revision: {}",
+                    changeData.project().get(), e.getMessage());
+            return null;
+        }
+
+        // Hash the approvals independent of their order
+        Hasher approvalsHasher = Hashing.murmur3_128().newHasher();
+        changeData.currentApprovals().stream()
+                .map(SubmitRules::approvalString)
+                .sorted(Comparator.naturalOrder())
+                .forEach(approval -> approvalsHasher.putString(approval, StandardCharsets.UTF_8).putByte((byte) 0));
+
+        return new SubmitRecordKey(changeData.getId().get(), changeData.change().currentPatchSetId().get(),
+                changeData.change().getTopic(),
+                approvalsHasher.hash().asLong(), pluginConfig.getSnapshot().getGeneration(),
+                projectConfigRevision, groupMembersCache.getGeneration());
+    }
+
+    private static String approvalString(PatchSetApproval approval) {
+        return approval.accountId().get() + ":" + approval.labelId().get() + ":" + approval.value();
+    }
+
+    /**
+     * Memoizes the status if the evaluation is cacheable, and votes for the change
+     *
+     * @param submitRecordKey
+     * @param cacheable
+     * @param status status to vote with, or null if the rule does not apply to the change
+     * @return
+     */
+    private Optional<SubmitRecord> remember(SubmitRecordKey submitRecordKey, boolean cacheable, Status status) {
+        if (cacheable) {
+            submitRecordCache.put(submitRecordKey, Optional.ofNullable(status));
+        }
+        return status == null ? Optional.empty() : vote(status);
+    }
+
     /**
      * Votes for the change
      *
@@ -0,0 +1,292 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gerrit.entities.PatchSetApproval;
+import com.google.gerrit.server.query.change.ChangeData;
+import com.vmware.gerrit.plugins.commitvalidator.config.ConfigSnapshot;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntry;
+import com.vmware.gerrit.plugins.commitvalidator.entities.TemplateEntryKind;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.PersonIdent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled requiresAdditionalCodeReviewApprovalIf conditions of a project. A change requires
+ * an additional approval if any of the conditions applies to it. A condition is either
+ * <ul>
+ * <li>"topic &lt;name&gt;", or "topic ^&lt;regex&gt;", matching the topic of the change</li>
+ * <li>"label &lt;name&gt;" matching any non-zero vote on the label, or "label &lt;name&gt;=&lt;value&gt;"
+ * matching the given vote</li>
+ * <li>"author &lt;email&gt;" matching the author email, where "*" matches any characters</li>
+ * <li>"&lt;entry&gt; eq|ne '&lt;value&gt;'" comparing the value of a template entry in the commit
+ * message, a missing entry has an empty value</li>
+ * <li>"files &gt;|&gt;=|&lt;|&lt;= &lt;count&gt;" comparing the number of files modified by the change</li>
+ * <li>"path &lt;glob&gt;" matching any file modified by the change, see {@link PathMatcher}</li>
+ * </ul>
+ * Any other condition always applies, as before conditions were evaluated. The conditions are
+ * evaluated cheapest first, so that the commit and its diff are only loaded if no cheaper
+ * condition has applied. All path conditions are compiled into one {@link PathMatcher}, so the
+ * modified files, which Gerrit reads from its diff cache, are tested in a single pass.
+ */
+@Slf4j
+@ToString
+public class ApprovalConditions {
+    private static final ApprovalConditions NONE = new ApprovalConditions(ImmutableList.of());
+
+    private static final Pattern LABEL = Pattern.compile("label\\s+([^=\\s]+)\\s*(?:=\\s*([+-]?\\d+))?");
+    private static final Pattern FILES = Pattern.compile("files\\s*(>=|<=|>|<)\\s*(\\d+)");
+    private static final Pattern PATH = Pattern.compile("path\\s+(\\S.*)");
+    private static final Pattern ENTRY = Pattern.compile("(\\S+)\\s+(eq|ne)\\s+(.*)");
+
+    // Relative cost of the data a condition needs, conditions are evaluated in this order
+    private static final int COST_NONE = 0;
+    private static final int COST_CHANGE = 1;
+    private static final int COST_APPROVALS = 2;
+    private static final int COST_COMMIT = 3;
+    private static final int COST_DIFF = 4;
+
+    private final ImmutableList<Condition> conditions;
+
+    private ApprovalConditions(ImmutableList<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    /**
+     * Compiles given conditions
+     *
+     * @param expressions
+     * @return
+     */
+    public static ApprovalConditions compile(List<String> expressions) {
+        if (expressions == null || expressions.isEmpty()) {
+            return NONE;
+        }
+
+        List<Condition> conditions = new ArrayList<>();
+        List<String> pathConditions = new ArrayList<>();
+        List<String> pathGlobs = new ArrayList<>();
+        for (String expression : expressions) {
+            String condition = expression.trim();
+            if (condition.isEmpty()) {
+                continue;
+            }
+
+            Matcher path = PATH.matcher(condition);
+            if (path.matches()) {
+                pathConditions.add(condition);
+                pathGlobs.add(path.group(1));
+                continue;
+            }
+            conditions.add(compileCondition(condition));
+        }
+
+        if (!pathGlobs.isEmpty()) {
+            PathMatcher pathMatcher = PathMatcher.compile(pathGlobs);
+            conditions.add(new Condition(String.join(", ", pathConditions), COST_DIFF,
+                    evaluation -> pathMatcher.matchesAny(evaluation.changeData.currentFilePaths())));
+        }
+        conditions.sort(Comparator.comparingInt(Condition::getCost));
+        return new ApprovalConditions(ImmutableList.copyOf(conditions));
+    }
+
+    public boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    /**
+     * Checks whether any of the conditions applies to given change. Failures to load the change
+     * data are thrown as they are.
+     *
+     * @param changeData
+     * @param snapshot   config the template entries are looked up in
+     * @return
+     */
+    public boolean matches(ChangeData changeData, ConfigSnapshot snapshot) {
+        Evaluation evaluation = new Evaluation(changeData, snapshot);
+        for (Condition condition : conditions) {
+            if (condition.test(evaluation)) {
+                log.debug("Change: {} - additional approval condition '{}' applies",
+                        changeData.getId(), condition.getExpression());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Condition compileCondition(String condition) {
+        String[] parts = condition.split("\\s+", 2);
+        String keyword = parts[0];
+        String argument = parts.length > 1 ? parts[1].trim() : "";
+
+        try {
+            if (keyword.equals("topic") && !argument.isEmpty()) {
+                if (argument.startsWith("^")) {
+                    Pattern topic = Pattern.compile(argument.substring(1));
+                    return new Condition(condition, COST_CHANGE, evaluation -> {
+                        String changeTopic = evaluation.changeData.change().getTopic();
+                        return changeTopic != null && topic.matcher(changeTopic).matches();
+                    });
+                }
+                return new Condition(condition, COST_CHANGE,
+                        evaluation -> argument.equals(evaluation.changeData.change().getTopic()));
+            }
+
+            Matcher label = LABEL.matcher(condition);
+            if (label.matches()) {
+                String labelName = label.group(1);
+                Short labelValue = label.group(2) == null ? null : Short.valueOf(label.group(2));
+                return new Condition(condition, COST_APPROVALS, evaluation -> {
+                    for (PatchSetApproval approval : evaluation.changeData.currentApprovals()) {
+                        if (approval.labelId().get().equals(labelName)
+                                && (labelValue == null ? approval.value() != 0 : approval.value() == labelValue)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                });
+            }
+
+            if (keyword.equals("author") && !argument.isEmpty()) {
+                Pattern email = globToPattern(argument);
+                return new Condition(condition, COST_COMMIT, evaluation -> {
+                    PersonIdent author = evaluation.changeData.getAuthor();
+                    return author != null && author.getEmailAddress() != null
+                            && email.matcher(author.getEmailAddress()).matches();
+                });
+            }
+
+            Matcher files = FILES.matcher(condition);
+            if (files.matches()) {
+                String operator = files.group(1);
+                int count = Integer.parseInt(files.group(2));
+                return new Condition(condition, COST_DIFF, evaluation -> {
+                    int modifiedFiles = evaluation.changeData.currentFilePaths().size();
+                    switch (operator) {
+                        case ">":
+                            return modifiedFiles > count;
+                        case ">=":
+                            return modifiedFiles >= count;
+                        case "<":
+                            return modifiedFiles < count;
+                        default:
+                            return modifiedFiles <= count;
+                    }
+                });
+            }
+
+            Matcher entry = ENTRY.matcher(condition);
+            if (entry.matches()) {
+                String entryName = entry.group(1);
+                boolean equal = entry.group(2).equals("eq");
+                String value = unquote(entry.group(3).trim());
+                return new Condition(condition, COST_COMMIT,
+                        evaluation -> value.equals(evaluation.entryValue(entryName)) == equal);
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid additional approval condition '{}', it always applies: {}", condition, e.getMessage());
+            return new Condition(condition, COST_NONE, evaluation -> true);
+        }
+
+        log.warn("Unknown additional approval condition '{}', it always applies", condition);
+        return new Condition(condition, COST_NONE, evaluation -> true);
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.startsWith("'") && value.endsWith("'")
+                || value.startsWith("\"") && value.endsWith("\""))) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    private static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (String literal : glob.split("\\*", -1)) {
+            if (regex.length() > 0) {
+                regex.append(".*");
+            }
+            if (!literal.isEmpty()) {
+                regex.append(Pattern.quote(literal));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
+    @ToString
+    private static final class Condition {
+        private final String expression;
+        private final int cost;
+        @ToString.Exclude
+        private final Predicate<Evaluation> test;
+
+        private Condition(String expression, int cost, Predicate<Evaluation> test) {
+            this.expression = expression;
+            this.cost = cost;
+            this.test = test;
+        }
+
+        String getExpression() {
+            return expression;
+        }
+
+        int getCost() {
+            return cost;
+        }
+
+        boolean test(Evaluation evaluation) {
+            return test.test(evaluation);
+        }
+    }
+
+    /**
+     * Change data of one evaluation, the commit message is only tokenized once and only if a
+     * condition needs it
+     */
+    private static final class Evaluation {
+        private final ChangeData changeData;
+        private final ConfigSnapshot snapshot;
+        private CommitMessage commitMessage;
+
+        private Evaluation(ChangeData changeData, ConfigSnapshot snapshot) {
+            this.changeData = changeData;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Returns the value of given template entry in the commit message, or an empty string
+         * if the message has none
+         */
+        String entryValue(String entryName) {
+            TemplateEntry entry = snapshot.getTemplateEntry(entryName);
+            if (entry == null) {
+                return "";
+            }
+
+            if (commitMessage == null) {
+                commitMessage = CommitMessage.parse(changeData.change().getSubject(), changeData.commitMessage());
+            }
+
+            if (entry.getKind() == TemplateEntryKind.KEY_VAL) {
+                String value = commitMessage.getKeyValue(entry.getKey());
+                return value == null ? "" : value;
+            }
+
+            if (entry.getValuePattern() == null) {
+                return "";
+            }
+            CharSequence text = entry.getKind() == TemplateEntryKind.STR_SUB
+                    ? commitMessage.getSubject().trim()
+                    : commitMessage.getTrimmedMessage();
+            Matcher matcher = entry.getValuePattern()
+                    .matcher(PatternGuard.bounded(text, entry.getValuePattern(), snapshot.getPatternTimeout()));
+            return matcher.find() ? matcher.group() : "";
+        }
+    }
+}
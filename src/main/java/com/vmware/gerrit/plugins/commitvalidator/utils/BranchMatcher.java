@@ -0,0 +1,160 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.collect.ImmutableSet;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Matches refs against the branch entries of a project. An entry is either
+ * <ul>
+ * <li>a branch name, e.g. "master" or "refs/heads/master"</li>
+ * <li>a glob, e.g. "release/*", where "*" matches within one path segment and "**" across
+ * segments</li>
+ * <li>a regular expression starting with "^", e.g. "^refs/heads/stable-.*"</li>
+ * </ul>
+ * Names and globs without a "refs/" prefix refer to refs/heads. Branch names are looked up in a
+ * hash set, and all globs and regular expressions are combined into one pattern, so the cost of
+ * a match does not grow with the number of branch names.
+ */
+@Slf4j
+@ToString
+public class BranchMatcher {
+    private static final String REFS = "refs/";
+    private static final String REFS_HEADS = "refs/heads/";
+    private static final String REFS_FOR = "refs/for/";
+
+    private static final BranchMatcher ALL_BRANCHES = new BranchMatcher(true, ImmutableSet.of(), null);
+
+    private final boolean matchAll;
+    private final ImmutableSet<String> refs;
+    private final Pattern pattern;
+
+    private BranchMatcher(boolean matchAll, ImmutableSet<String> refs, Pattern pattern) {
+        this.matchAll = matchAll;
+        this.refs = refs;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Compiles the matcher for given branch entries. No entries match all branches.
+     *
+     * @param branches
+     * @return
+     */
+    public static BranchMatcher compile(List<String> branches) {
+        if (branches == null || branches.isEmpty()) {
+            return ALL_BRANCHES;
+        }
+
+        ImmutableSet.Builder<String> refs = ImmutableSet.builder();
+        List<String> expressions = new ArrayList<>();
+        for (String branch : branches) {
+            String entry = branch.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+
+            if (entry.startsWith("^")) {
+                String expression = entry.substring(1);
+                try {
+                    Pattern.compile(expression);
+                } catch (PatternSyntaxException e) {
+                    log.warn("Ignoring invalid branch pattern {}: {}", entry, e.getDescription());
+                    continue;
+                }
+                expressions.add(expression.startsWith(REFS)
+                        ? expression
+                        : Pattern.quote(REFS_HEADS) + "(?:" + expression + ")");
+            } else if (entry.indexOf('*') >= 0 || entry.indexOf('?') >= 0) {
+                expressions.add(globToRegex(toRef(entry)));
+            } else {
+                refs.add(toRef(entry));
+            }
+        }
+
+        Pattern pattern = null;
+        if (!expressions.isEmpty()) {
+            StringBuilder combined = new StringBuilder();
+            for (String expression : expressions) {
+                if (combined.length() > 0) {
+                    combined.append('|');
+                }
+                combined.append("(?:").append(expression).append(')');
+            }
+            pattern = Pattern.compile(combined.toString());
+        }
+        return new BranchMatcher(false, refs.build(), pattern);
+    }
+
+    /**
+     * Checks whether given ref, or branch name, is matched by one of the branch entries.
+     * Magic refs/for refs are matched by their destination branch.
+     *
+     * @param ref
+     * @return
+     */
+    public boolean matches(String ref) {
+        if (matchAll) {
+            return true;
+        }
+
+        String normalizedRef = normalize(ref);
+        if (refs.contains(normalizedRef)) {
+            return true;
+        }
+        return pattern != null && pattern.matcher(normalizedRef).matches();
+    }
+
+    /**
+     * Returns the full name of the destination branch of given ref
+     *
+     * @param ref
+     * @return
+     */
+    public static String normalize(String ref) {
+        if (ref.startsWith(REFS_FOR)) {
+            String branch = ref.substring(REFS_FOR.length());
+            int options = branch.indexOf('%');
+            return REFS_HEADS + (options >= 0 ? branch.substring(0, options) : branch);
+        }
+        return toRef(ref);
+    }
+
+    private static String toRef(String name) {
+        return name.startsWith(REFS) ? name : REFS_HEADS + name;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c != '*' && c != '?') {
+                literal.append(c);
+                continue;
+            }
+
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            if (c == '?') {
+                regex.append("[^/]");
+            } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append("[^/]*");
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return regex.toString();
+    }
+}
@@ -0,0 +1,135 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.CircuitState;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Count based circuit breaker for calls to an external endpoint.
+ * <p>
+ * The outcomes of the last {@code windowSize} calls are kept. Once at least
+ * {@code min(5, windowSize)} calls are recorded and the failure rate reaches the threshold, the
+ * circuit opens and calls are rejected for {@code openDuration} milliseconds. After that up to
+ * {@code halfOpenProbes} trial calls are let through: if all of them succeed the circuit closes
+ * again, a single failure opens it again.
+ */
+@Slf4j
+public class CircuitBreaker {
+    private static final int MIN_CALLS = 5;
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final long openDuration;
+    private final int halfOpenProbes;
+    private final int minCalls;
+    private final boolean[] failures;
+
+    private CircuitState state = CircuitState.CLOSED;
+    private int next;
+    private int recordedCalls;
+    private int failedCalls;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(String name, int windowSize, int failureRateThreshold, long openDuration,
+                          int halfOpenProbes) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.failures = new boolean[Math.max(1, windowSize)];
+        this.minCalls = Math.min(MIN_CALLS, failures.length);
+    }
+
+    /**
+     * Checks whether a call may be made now. In half-open state every allowed call consumes
+     * one of the trial permits, so its outcome must be recorded.
+     *
+     * @return
+     */
+    public synchronized boolean allowRequest() {
+        if (state == CircuitState.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDuration) {
+                return false;
+            }
+            state = CircuitState.HALF_OPEN;
+            halfOpenPermits = halfOpenProbes;
+            halfOpenSuccesses = 0;
+            log.info("Circuit of endpoint {} is half-open, letting {} trial calls through", name, halfOpenProbes);
+        }
+
+        if (state == CircuitState.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    public synchronized void recordSuccess() {
+        if (state == CircuitState.HALF_OPEN) {
+            halfOpenSuccesses++;
+            if (halfOpenSuccesses >= halfOpenProbes) {
+                log.info("Circuit of endpoint {} is closed again", name);
+                close();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    /**
+     * Records a call whose outcome says nothing about the endpoint, e.g. one cut short by the
+     * time budget of the caller. A trial permit it consumed is handed back.
+     */
+    public synchronized void recordIgnored() {
+        if (state == CircuitState.HALF_OPEN && halfOpenPermits < halfOpenProbes) {
+            halfOpenPermits++;
+        }
+    }
+
+    public synchronized void recordFailure() {
+        if (state == CircuitState.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == CircuitState.CLOSED && recordedCalls >= minCalls
+                && failedCalls * 100 >= failureRateThreshold * recordedCalls) {
+            open();
+        }
+    }
+
+    public synchronized CircuitState getState() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recordedCalls == failures.length) {
+            if (failures[next]) {
+                failedCalls--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        failures[next] = failed;
+        if (failed) {
+            failedCalls++;
+        }
+        next = (next + 1) % failures.length;
+    }
+
+    private void open() {
+        log.warn("Circuit of endpoint {} is open, calls are rejected for the next {} ms", name, openDuration);
+        state = CircuitState.OPEN;
+        openedAt = System.currentTimeMillis();
+    }
+
+    private void close() {
+        state = CircuitState.CLOSED;
+        next = 0;
+        recordedCalls = 0;
+        failedCalls = 0;
+    }
+}
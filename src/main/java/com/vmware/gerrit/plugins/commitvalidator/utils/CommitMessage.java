@@ -0,0 +1,321 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.RawParseUtils;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Commit message tokenized once into its subject, full text and "Key: value" lines, so that
+ * the values of all template entries are looked up without scanning the message again.
+ * <p>
+ * The message is read from the raw commit buffer. A pure ASCII message is exposed as a view
+ * over the raw bytes, any other message is decoded exactly once. Lines are kept as offsets
+ * into the text, so no per line strings are created.
+ * <p>
+ * A message longer than the scanning limit is cut in the middle rather than at the end: its
+ * first and last lines are kept, so that the subject and the footer lines, where the entries
+ * usually are, are still validated.
+ */
+@Slf4j
+public class CommitMessage {
+    @Getter
+    private final String subject;
+    /**
+     * Full message, possibly cut in the middle at the scanning limit
+     */
+    @Getter
+    private final CharSequence fullMessage;
+    /**
+     * Whether lines in the middle of the message were left out because of the scanning limit
+     */
+    @Getter
+    private final boolean truncated;
+    // Trimmed line -> index of its first occurrence, sorted so that all lines starting with a
+    // key are found with one range lookup
+    private final NavigableMap<TextSlice, Integer> lineIndex;
+
+    private CommitMessage(String subject, CharSequence fullMessage, boolean truncated,
+                          NavigableMap<TextSlice, Integer> lineIndex) {
+        this.subject = subject;
+        this.fullMessage = fullMessage;
+        this.truncated = truncated;
+        this.lineIndex = lineIndex;
+    }
+
+    /**
+     * Tokenizes the message of given commit in a single pass
+     *
+     * @param commit
+     * @param maxLength number of message characters which are scanned, 0 or less for all
+     * @return
+     */
+    public static CommitMessage parse(RevCommit commit, int maxLength) {
+        CharSequence message = messageText(commit);
+        if (maxLength > 0 && message.length() > maxLength) {
+            log.warn("Commit {} has a message of {} characters, only its first and last {} are validated",
+                    commit.getName(), message.length(), maxLength);
+            return parse(commit.getShortMessage(), headAndTail(message, maxLength), true);
+        }
+        return parse(commit.getShortMessage(), message, false);
+    }
+
+    /**
+     * Tokenizes given commit message in a single pass
+     *
+     * @param subject
+     * @param fullMessage
+     * @return
+     */
+    public static CommitMessage parse(String subject, CharSequence fullMessage) {
+        return parse(subject, fullMessage, false);
+    }
+
+    private static CommitMessage parse(String subject, CharSequence fullMessage, boolean truncated) {
+        NavigableMap<TextSlice, Integer> lineIndex = new TreeMap<>();
+
+        int line = 0;
+        int start = 0;
+        int length = fullMessage.length();
+        while (start <= length) {
+            int end = start;
+            while (end < length && fullMessage.charAt(end) != '\n') {
+                end++;
+            }
+
+            TextSlice trimmedLine = new TextSlice(fullMessage, start, end).trim();
+            if (trimmedLine.length() > 0) {
+                lineIndex.putIfAbsent(trimmedLine, line);
+            }
+            line++;
+            start = end + 1;
+        }
+        return new CommitMessage(subject, fullMessage, truncated, lineIndex);
+    }
+
+    /**
+     * Keeps the whole lines within the first and the last half of given length of the message,
+     * joined by a line break
+     *
+     * @param message
+     * @param maxLength
+     * @return
+     */
+    private static CharSequence headAndTail(CharSequence message, int maxLength) {
+        int length = message.length();
+        int headEnd = maxLength / 2;
+        while (headEnd > 0 && message.charAt(headEnd - 1) != '\n') {
+            headEnd--;
+        }
+        int tailStart = length - (maxLength - maxLength / 2);
+        while (tailStart < length && message.charAt(tailStart - 1) != '\n') {
+            tailStart++;
+        }
+
+        return new StringBuilder(headEnd + 1 + length - tailStart)
+                .append(message, 0, headEnd)
+                .append('\n')
+                .append(message, tailStart, length)
+                .toString();
+    }
+
+    /**
+     * Returns the full message without leading and trailing whitespace, without copying it
+     *
+     * @return
+     */
+    public CharSequence getTrimmedMessage() {
+        return new TextSlice(fullMessage, 0, fullMessage.length()).trim();
+    }
+
+    /**
+     * Returns the value of the first line starting with given key. The value is the text
+     * between the first and the second colon of the line. If the line has no value, an empty
+     * string is returned, and if no line starts with the key, null is returned.
+     *
+     * @param key
+     * @return
+     */
+    public String getKeyValue(String key) {
+        TextSlice from = new TextSlice(key, 0, key.length());
+        String upperBound = key + Character.MAX_VALUE;
+        TextSlice to = new TextSlice(upperBound, 0, upperBound.length());
+
+        Map.Entry<TextSlice, Integer> first = null;
+        for (Map.Entry<TextSlice, Integer> candidate : lineIndex.subMap(from, true, to, false).entrySet()) {
+            if (first == null || candidate.getValue() < first.getValue()) {
+                first = candidate;
+            }
+        }
+        if (first == null) {
+            return null;
+        }
+
+        TextSlice line = first.getKey();
+        int firstColon = line.indexOf(':', 0);
+        if (firstColon < 0) {
+            // No value is available for given key
+            return "";
+        }
+        int secondColon = line.indexOf(':', firstColon + 1);
+        return line.subSequence(firstColon + 1, secondColon < 0 ? line.length() : secondColon)
+                .trim().toString();
+    }
+
+    private static CharSequence messageText(RevCommit commit) {
+        byte[] raw = commit.getRawBuffer();
+        int start = RawParseUtils.commitMessage(raw, 0);
+        if (start < 0) {
+            return "";
+        }
+
+        Charset charset;
+        try {
+            charset = RawParseUtils.parseEncoding(raw);
+        } catch (RuntimeException e) {
+            charset = StandardCharsets.UTF_8;
+        }
+
+        if (isAsciiCompatible(charset) && isAscii(raw, start, raw.length)) {
+            return new AsciiText(raw, start, raw.length);
+        }
+        return RawParseUtils.decode(charset, raw, start, raw.length);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isAscii(byte[] raw, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (raw[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read-only view of ASCII bytes as characters
+     */
+    private static final class AsciiText implements CharSequence {
+        private final byte[] bytes;
+        private final int start;
+        private final int end;
+
+        private AsciiText(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) bytes[start + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return new AsciiText(bytes, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Range of a char sequence, ordered lexicographically like strings
+     */
+    private static final class TextSlice implements CharSequence, Comparable<TextSlice> {
+        private final CharSequence text;
+        private final int start;
+        private final int end;
+
+        private TextSlice(CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        TextSlice trim() {
+            int from = start;
+            int to = end;
+            while (from < to && text.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && text.charAt(to - 1) <= ' ') {
+                to--;
+            }
+            return from == start && to == end ? this : new TextSlice(text, from, to);
+        }
+
+        int indexOf(char c, int fromIndex) {
+            for (int i = start + fromIndex; i < end; i++) {
+                if (text.charAt(i) == c) {
+                    return i - start;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public TextSlice subSequence(int from, int to) {
+            return new TextSlice(text, start + from, start + to);
+        }
+
+        @Override
+        public int compareTo(TextSlice other) {
+            int length = Math.min(length(), other.length());
+            for (int i = 0; i < length; i++) {
+                int difference = charAt(i) - other.charAt(i);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return length() - other.length();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof TextSlice && compareTo((TextSlice) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
@@ -1,43 +1,49 @@
 package com.vmware.gerrit.plugins.commitvalidator.utils;
 
-import com.google.gerrit.extensions.api.GerritApi;
-import com.google.gerrit.extensions.common.AccountInfo;
-import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.cache.IdentityResolver;
+import com.vmware.gerrit.plugins.commitvalidator.entities.SkipPrincipals;
+import org.eclipse.jgit.lib.PersonIdent;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
 
+@Singleton
 public class GerritUtils {
-    private GerritApi gerritApi;
+    private final IdentityResolver identityResolver;
+    private final IdentifiedUser.GenericFactory identifiedUserFactory;
 
-    public GerritUtils(GerritApi gerritApi) {
-        this.gerritApi = gerritApi;
+    @Inject
+    public GerritUtils(IdentityResolver identityResolver, IdentifiedUser.GenericFactory identifiedUserFactory) {
+        this.identityResolver = identityResolver;
+        this.identifiedUserFactory = identifiedUserFactory;
     }
 
-    public List<String> getAllUsers(List<String> additionalCRApprovers) throws RestApiException {
-        // Get all users of the
-        List<String> allUsernames = new ArrayList<>();
-
-        for (String additionalApprover : additionalCRApprovers) {
-
-            String[] userGroupIdentifier = additionalApprover.split(" ");
-            if (userGroupIdentifier[0].equals("group")) {
-                String groupName = userGroupIdentifier[1];
-
-                List<AccountInfo> members = null;
-
-                members = gerritApi.groups().id(groupName).members();
+    /**
+     * Returns the Gerrit user owning the email address of given author or committer
+     *
+     * @param person
+     * @return
+     */
+    public Optional<IdentifiedUser> getUser(PersonIdent person) {
+        return identityResolver.resolve(person).map(identifiedUserFactory::create);
+    }
 
-                List<String> membersUsernames = members.parallelStream().map(accountInfo -> {
-                    return accountInfo.username;
-                }).collect(Collectors.toList());
-                allUsernames.addAll(membersUsernames);
-            } else if (userGroupIdentifier[0].equals("user")) {
-                String username = userGroupIdentifier[1];
-                allUsernames.add(gerritApi.accounts().id(username).get().username);
-            }
+    /**
+     * Checks whether given user is one of the skip list users or a member of one of its groups.
+     * Group membership is answered by the cached effective groups of the user, so group rosters
+     * are never expanded.
+     *
+     * @param user
+     * @param skipPrincipals
+     * @return
+     */
+    public static boolean isAnyOf(IdentifiedUser user, SkipPrincipals skipPrincipals) {
+        if (skipPrincipals.getAccountIds().contains(user.getAccountId())) {
+            return true;
         }
-        return allUsernames;
+        return !skipPrincipals.getGroupUuids().isEmpty()
+                && user.getEffectiveGroups().containsAnyOf(skipPrincipals.getGroupUuids());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,140 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.config.ConfigSnapshot;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraEndpoint;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one long-lived {@link JiraUtils} per configured endpoint-jira section. The instance and
+ * its connection pool are recycled when the endpoint configuration changes.
+ * <p>
+ * A background task on the plugin's own single thread queue periodically runs the health probe
+ * of every endpoint in use, so blocking probes never hold up Gerrit's shared queues. Whenever the
+ * plugin config has changed, it also closes the clients of endpoints which were removed or
+ * changed.
+ */
+@Slf4j
+@Singleton
+public class JiraEndpointRegistry implements LifecycleListener {
+    private static final long HEALTH_CHECK_TICK_SECONDS = 5;
+    private static final String HEALTH_CHECK_QUEUE_NAME = "CommitValidator-HealthCheck";
+
+    private final ConcurrentMap<String, JiraUtils> endpoints = new ConcurrentHashMap<>();
+    private final WorkQueue workQueue;
+    private final MetricMaker metricMaker;
+    private final ValidationExecutor executor;
+    private final CommitValidatorConfig pluginConfig;
+    private ScheduledExecutorService healthCheckQueue;
+    private ScheduledFuture<?> healthCheckTask;
+    private volatile long configGeneration;
+
+    @Inject
+    public JiraEndpointRegistry(WorkQueue workQueue, MetricMaker metricMaker, ValidationExecutor executor,
+                                CommitValidatorConfig pluginConfig) {
+        this.workQueue = workQueue;
+        this.metricMaker = metricMaker;
+        this.executor = executor;
+        this.pluginConfig = pluginConfig;
+    }
+
+    /**
+     * Returns the Jira utils for given endpoint, creating a new one if the endpoint is used
+     * for the first time or its configuration has changed.
+     *
+     * @param endpointName
+     * @param endpoint
+     * @return
+     */
+    public JiraUtils get(String endpointName, JiraEndpoint endpoint) {
+        JiraUtils current = endpoints.get(endpointName);
+        if (current != null && current.getEndpoint().equals(endpoint)) {
+            return current;
+        }
+
+        return endpoints.compute(endpointName, (name, existing) -> {
+            if (existing != null && existing.getEndpoint().equals(endpoint)) {
+                return existing;
+            }
+            if (existing != null) {
+                log.info("Configuration of Jira endpoint {} has changed, recycling its client", name);
+                existing.close();
+            }
+            log.info("Creating Jira client for endpoint {}", name);
+            return new JiraUtils(name, endpoint, metricMaker, executor);
+        });
+    }
+
+    @Override
+    public synchronized void start() {
+        healthCheckQueue = workQueue.createQueue(1, HEALTH_CHECK_QUEUE_NAME);
+        healthCheckTask = healthCheckQueue.scheduleAtFixedRate(this::checkHealth,
+                HEALTH_CHECK_TICK_SECONDS, HEALTH_CHECK_TICK_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (healthCheckTask != null) {
+            healthCheckTask.cancel(true);
+            healthCheckTask = null;
+        }
+        if (healthCheckQueue != null) {
+            healthCheckQueue.shutdownNow();
+            healthCheckQueue = null;
+        }
+        endpoints.values().forEach(JiraUtils::close);
+        endpoints.clear();
+    }
+
+    private void checkHealth() {
+        try {
+            closeRemovedEndpoints();
+        } catch (RuntimeException e) {
+            log.warn("Unable to close the clients of removed Jira endpoints", e);
+        }
+
+        for (JiraUtils jiraUtils : endpoints.values()) {
+            try {
+                jiraUtils.checkHealth();
+            } catch (RuntimeException e) {
+                log.warn("Health check of Jira endpoint {} failed", jiraUtils.getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Closes the clients of all endpoints which are no longer configured, or configured
+     * differently, once the plugin config has changed
+     */
+    private void closeRemovedEndpoints() {
+        ConfigSnapshot snapshot = pluginConfig.getSnapshot();
+        if (snapshot.getGeneration() == configGeneration) {
+            return;
+        }
+        configGeneration = snapshot.getGeneration();
+
+        Map<String, JiraEndpoint> configured = snapshot.getJiraEndpoints();
+        for (String endpointName : endpoints.keySet()) {
+            endpoints.computeIfPresent(endpointName, (name, existing) -> {
+                if (existing.getEndpoint().equals(configured.get(name))) {
+                    return existing;
+                }
+                log.info("Jira endpoint {} was removed or changed, closing its client", name);
+                existing.close();
+                return null;
+            });
+        }
+    }
+}
@@ -1,45 +1,455 @@
 package com.vmware.gerrit.plugins.commitvalidator.utils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+import com.google.gerrit.extensions.registration.RegistrationHandle;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.vmware.gerrit.plugins.commitvalidator.entities.Constants;
+import com.vmware.gerrit.plugins.commitvalidator.entities.EndpointHealthState;
+import com.vmware.gerrit.plugins.commitvalidator.entities.EndpointUnavailableException;
 import com.vmware.gerrit.plugins.commitvalidator.entities.InvalidEntryException;
+import com.vmware.gerrit.plugins.commitvalidator.entities.JiraEndpoint;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import net.rcarz.jiraclient.*;
+import net.sf.json.JSON;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
 
 import java.io.IOException;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Validates issue IDs against a single Jira endpoint. Instances are long-lived (see
+ * {@link JiraEndpointRegistry}) and own a bounded keep-alive connection pool to the endpoint.
+ * They also cache issue statuses, including issues that do not exist, so repeated references
+ * to the same issue are resolved locally.
+ * <p>
+ * The endpoint health is checked by a periodic background probe rather than on every lookup,
+ * and failing lookups trip a {@link CircuitBreaker}. While the endpoint is known to be down or
+ * the circuit is open, lookups fail fast and the configured failure policy decides whether the
+ * value is accepted.
+ * <p>
+ * Every call to Jira runs on the {@link ValidationExecutor} and is bounded by the endpoint call
+ * timeout and the remaining time budget of the commit. A call exceeding it is cancelled and
+ * treated like an unavailable endpoint. Only a call exceeding the full call timeout counts as
+ * a failure of the endpoint, one cut short by the time budget does not.
+ */
+@Slf4j
 public class JiraUtils {
-    private String url;
-    private String username;
-    private String password;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final String HEALTH_CHECK_PATH = "/rest/api/2/serverInfo";
+    private static final String SEARCH_PATH = "/rest/api/2/search";
+    private static final String SEARCH_FIELDS = "status";
 
-    public JiraUtils(String url, String username, String password) {
-        this.url = url;
-        this.username = username;
-        this.password = password;
+    @Getter
+    private final String name;
+    @Getter
+    private final JiraEndpoint endpoint;
+    private final Cache<String, String> issueStatuses;
+    private final Cache<String, Boolean> missingIssues;
+    private final Cache<String, String> lastKnownStatuses;
+    private final CircuitBreaker circuitBreaker;
+    private final PoolingClientConnectionManager connectionManager;
+    private final RestClient restClient;
+    private final ValidationExecutor executor;
+    private final RegistrationHandle healthMetric;
+    private final RegistrationHandle circuitMetric;
+    @Getter
+    private volatile EndpointHealthState healthState = EndpointHealthState.UNKNOWN;
+    private volatile long lastHealthCheck;
+
+    public JiraUtils(String name, JiraEndpoint endpoint, MetricMaker metricMaker, ValidationExecutor executor) {
+        this.name = name;
+        this.endpoint = endpoint;
+        this.executor = executor;
+
+        // One pooled HTTP client per endpoint, so connections (and TLS sessions) are reused across pushes
+        this.connectionManager = new PoolingClientConnectionManager();
+        connectionManager.setMaxTotal(endpoint.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(endpoint.getMaxConnections());
+        DefaultHttpClient httpClient = new DefaultHttpClient(connectionManager);
+        HttpParams params = httpClient.getParams();
+        HttpConnectionParams.setConnectionTimeout(params, (int) endpoint.getConnectTimeout());
+        HttpConnectionParams.setSoTimeout(params, (int) endpoint.getReadTimeout());
+        this.restClient = new RestClient(httpClient,
+                new BasicCredentials(endpoint.getUsername(), endpoint.getPassword()),
+                URI.create(endpoint.getUrl()));
+
+        this.issueStatuses = CacheBuilder.newBuilder()
+                .maximumSize(endpoint.getCacheMaxSize())
+                .expireAfterWrite(endpoint.getCacheMaxAge(), TimeUnit.MILLISECONDS)
+                .build();
+        this.missingIssues = CacheBuilder.newBuilder()
+                .maximumSize(endpoint.getCacheMaxSize())
+                .expireAfterWrite(endpoint.getNotFoundCacheMaxAge(), TimeUnit.MILLISECONDS)
+                .build();
+        // Kept much longer than the fresh statuses, only used when the endpoint is unavailable
+        this.lastKnownStatuses = CacheBuilder.newBuilder()
+                .maximumSize(endpoint.getCacheMaxSize())
+                .expireAfterWrite(Constants.DEFAULT_ENDPOINT_LAST_KNOWN_STATUS_MAX_AGE_MS, TimeUnit.MILLISECONDS)
+                .build();
+        this.circuitBreaker = new CircuitBreaker(name, endpoint.getFailureWindow(),
+                endpoint.getFailureRateThreshold(), endpoint.getCircuitOpenDuration(), endpoint.getHalfOpenProbes());
+
+        this.healthMetric = metricMaker.newCallbackMetric(
+                "jira/" + sanitizeMetricName(name) + "/health", Integer.class,
+                new Description(String.format("Health of Jira endpoint %s (0: unknown, 1: up, 2: down)", name))
+                        .setGauge(),
+                () -> healthState.ordinal());
+        this.circuitMetric = metricMaker.newCallbackMetric(
+                "jira/" + sanitizeMetricName(name) + "/circuit_state", Integer.class,
+                new Description(String.format("Circuit state of Jira endpoint %s (0: closed, 1: open, 2: half-open)", name))
+                        .setGauge(),
+                () -> circuitBreaker.getState().ordinal());
+    }
+
+    public boolean isIssueIdValid(String issueId, List<String> allowedStatuses, ValidationDeadline deadline)
+            throws InvalidEntryException, JiraException {
+        String status;
+        try {
+            status = getIssueStatus(issueId, deadline);
+        } catch (EndpointUnavailableException e) {
+            deadline.markDegraded();
+            return applyFailurePolicy(issueId, allowedStatuses, e);
+        }
+
+        checkAllowedStatus(issueId, status, allowedStatuses);
+        return true;
     }
 
-    public boolean isIssueIdValid(String issueId, List<String> allowedStatuses) throws InvalidEntryException, JiraException {
-        BasicCredentials creds = new BasicCredentials(username, password);
-        JiraClient jira = new JiraClient(url, creds);
+    /**
+     * Decides about an issue which could not be looked up as per the endpoint failure policy
+     *
+     * @param issueId
+     * @param allowedStatuses
+     * @param e
+     * @return
+     * @throws InvalidEntryException
+     * @throws JiraException
+     */
+    private boolean applyFailurePolicy(String issueId, List<String> allowedStatuses, EndpointUnavailableException e)
+            throws InvalidEntryException, JiraException {
+        switch (endpoint.getFailurePolicy()) {
+            case FAIL_OPEN:
+                log.warn("Accepting Jira issue {} without validation: {}", issueId, e.getMessage());
+                return true;
+            case ACCEPT_IF_CACHED:
+                String lastKnownStatus = lastKnownStatuses.getIfPresent(issueId);
+                if (lastKnownStatus != null) {
+                    log.warn("Validating Jira issue {} against its last known status {}: {}", issueId,
+                            lastKnownStatus, e.getMessage());
+                    checkAllowedStatus(issueId, lastKnownStatus, allowedStatuses);
+                    return true;
+                }
+                throw new JiraException(e.getMessage());
+            case FAIL_CLOSED:
+            default:
+                throw new JiraException(e.getMessage());
+        }
+    }
+
+    private void checkAllowedStatus(String issueId, String status, List<String> allowedStatuses)
+            throws InvalidEntryException {
+        if (allowedStatuses != null && !allowedStatuses.isEmpty()) {
+            if (!allowedStatuses.contains(status)) {
+                throw new InvalidEntryException(String.format("Jira issue %s is in %s status. But allowed statuses are:%s", issueId, status, allowedStatuses.toString()));
+            }
+        }
+    }
+
+    /**
+     * Resolves the statuses of all given issues which are not cached yet with batched JQL
+     * searches of at most batchSize keys each, and caches them. Issues which are not returned
+     * by a search are left to the individual lookup, as they may have been moved or may not
+     * exist at all.
+     *
+     * @param issueIds
+     * @param deadline
+     */
+    public void prefetch(Collection<String> issueIds, ValidationDeadline deadline) {
+        List<String> uncachedIssueIds = issueIds.stream()
+                .filter(issueId -> isSafeIssueKey(issueId))
+                .filter(issueId -> issueStatuses.getIfPresent(issueId) == null)
+                .filter(issueId -> missingIssues.getIfPresent(issueId) == null)
+                .distinct()
+                .collect(Collectors.toList());
+
+        for (List<String> batch : Iterables.partition(uncachedIssueIds, endpoint.getBatchSize())) {
+            // A batch of one is not cheaper than the individual lookup
+            if (batch.size() < 2) {
+                continue;
+            }
 
+            if (deadline.isExpired() || !isAvailable()) {
+                return;
+            }
+
+            String jql = batch.stream().map(issueId -> '"' + issueId + '"')
+                    .collect(Collectors.joining(",", "key in (", ")"));
+            try {
+                int resolved = call(() -> searchStatuses(jql, batch.size()), deadline);
+                circuitBreaker.recordSuccess();
+                log.debug("Resolved {} of {} issues from Jira endpoint {} in one query",
+                        resolved, batch.size(), name);
+            } catch (JiraException e) {
+                if (hasHttpStatus(e, HTTP_BAD_REQUEST)) {
+                    // Unknown keys do not fail the unvalidated query, so the query itself is
+                    // invalid, the issues are then looked up individually.
+                    circuitBreaker.recordSuccess();
+                } else {
+                    circuitBreaker.recordFailure();
+                }
+                log.debug("Batched lookup of issues {} from Jira endpoint {} failed: {}", batch, name, e.getMessage());
+            } catch (TimeoutException e) {
+                recordTimeout(e);
+                log.warn("Batched lookup of issues {} from Jira endpoint {} timed out", batch, name);
+            }
+        }
+    }
+
+    /**
+     * Searches the statuses of the issues matching given JQL and caches them. The query is not
+     * validated by Jira, so keys which do not exist or are not visible are left out of the
+     * result instead of failing the whole search.
+     *
+     * @param jql
+     * @param maxResults
+     * @return number of issues found
+     * @throws JiraException
+     */
+    private int searchStatuses(String jql, int maxResults) throws JiraException {
+        Map<String, String> params = new HashMap<>();
+        params.put("jql", jql);
+        params.put("fields", SEARCH_FIELDS);
+        params.put("maxResults", String.valueOf(maxResults));
+        params.put("validateQuery", "false");
+
+        JSON result;
         try {
-            jira.getRestClient().get(url);
-        } catch (RestException | IOException|URISyntaxException e) {
-          //  TODO: handle it
-            e.printStackTrace();
+            result = restClient.get(SEARCH_PATH, params);
+        } catch (Exception e) {
+            throw new JiraException("Failed to search issues", e);
+        }
+        if (!(result instanceof JSONObject)) {
+            throw new JiraException("JSON payload is malformed");
+        }
+
+        JSONArray issues = ((JSONObject) result).optJSONArray("issues");
+        if (issues == null) {
+            return 0;
+        }
+        for (int i = 0; i < issues.size(); i++) {
+            JSONObject issue = issues.getJSONObject(i);
+            JSONObject status = issue.optJSONObject("fields") == null
+                    ? null
+                    : issue.getJSONObject("fields").optJSONObject("status");
+            if (status != null && status.has("name")) {
+                cacheStatus(issue.getString("key"), status.getString("name").toUpperCase());
+            }
+        }
+        return issues.size();
+    }
+
+    /**
+     * Returns the upper-cased status name of given issue, either from cache or from Jira
+     *
+     * @param issueId
+     * @param deadline
+     * @return
+     * @throws InvalidEntryException        if the issue does not exist
+     * @throws EndpointUnavailableException if Jira could not be queried in time
+     */
+    private String getIssueStatus(String issueId, ValidationDeadline deadline)
+            throws InvalidEntryException, EndpointUnavailableException {
+        String status = issueStatuses.getIfPresent(issueId);
+        if (status != null) {
+            return status;
+        }
+        if (missingIssues.getIfPresent(issueId) != null) {
+            throw new InvalidEntryException("No Jira issue is found with given ID:" + issueId);
+        }
+
+        if (deadline.isExpired()) {
+            throw new EndpointUnavailableException(String.format(
+                    "Validation time budget exhausted before Jira issue %s could be fetched from endpoint %s", issueId, name));
+        }
+        if (!isAvailable()) {
+            throw new EndpointUnavailableException(String.format("Jira endpoint %s is currently unavailable", name));
         }
 
-        Issue issue = jira.getIssue(issueId);
+        Issue issue;
+        try {
+            issue = call(() -> Issue.get(restClient, issueId), deadline);
+            circuitBreaker.recordSuccess();
+        } catch (JiraException e) {
+            if (hasHttpStatus(e, HTTP_NOT_FOUND)) {
+                circuitBreaker.recordSuccess();
+                missingIssues.put(issueId, Boolean.TRUE);
+                throw new InvalidEntryException("No Jira issue is found with given ID:" + issueId);
+            }
+            circuitBreaker.recordFailure();
+            throw new EndpointUnavailableException(String.format("Unable to fetch Jira issue %s from endpoint %s: %s",
+                    issueId, name, e.getMessage()));
+        } catch (BudgetExhaustedException e) {
+            recordTimeout(e);
+            throw new EndpointUnavailableException(String.format(
+                    "Validation time budget exhausted while fetching Jira issue %s from endpoint %s", issueId, name));
+        } catch (TimeoutException e) {
+            recordTimeout(e);
+            throw new EndpointUnavailableException(String.format("Fetching Jira issue %s from endpoint %s timed out",
+                    issueId, name));
+        }
         if (issue == null) {
+            missingIssues.put(issueId, Boolean.TRUE);
             throw new InvalidEntryException("No Jira issue is found with given ID:" + issueId);
         }
 
-        if (allowedStatuses != null) {
-            //log.info(">> Issue status {}", issue.getStatus().getName());
-            if (!allowedStatuses.contains(issue.getStatus().getName().toUpperCase())) {
-                throw new InvalidEntryException(String.format("Jira issue %s is in %s status. But allowed statuses are:%s", issueId, issue.getStatus().getName().toUpperCase(), allowedStatuses.toString()));
+        status = issue.getStatus().getName().toUpperCase();
+        cacheStatus(issueId, status);
+        return status;
+    }
+
+    /**
+     * Runs given Jira call on the validation executor and waits at most as long as the call
+     * timeout and the remaining time budget allow. The call is cancelled if it takes longer.
+     *
+     * @param jiraCall
+     * @param deadline
+     * @return
+     * @throws JiraException    if the call failed
+     * @throws TimeoutException if the call did not complete in time, a
+     *                          {@link BudgetExhaustedException} if the time budget was shorter
+     *                          than the call timeout
+     */
+    private <T> T call(Callable<T> jiraCall, ValidationDeadline deadline) throws JiraException, TimeoutException {
+        long callTimeout = endpoint.getCallTimeout() > 0 ? endpoint.getCallTimeout() : Long.MAX_VALUE;
+        long timeout = deadline.timeoutFor(endpoint.getCallTimeout());
+        Future<T> future = executor.submit(jiraCall);
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            if (timeout < callTimeout) {
+                throw new BudgetExhaustedException();
             }
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new JiraException("Interrupted while calling Jira endpoint " + name, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JiraException) {
+                throw (JiraException) e.getCause();
+            }
+            throw new JiraException(e.getCause().getMessage(), e.getCause());
         }
-        return true;
+    }
+
+    /**
+     * Checks whether the endpoint may be called now, based on the background health probe and
+     * the circuit breaker.
+     *
+     * @return
+     */
+    private boolean isAvailable() {
+        return healthState != EndpointHealthState.DOWN && circuitBreaker.allowRequest();
+    }
+
+    /**
+     * Counts a timed out call as a failure of the endpoint, unless it was cut short by the time
+     * budget of the commit
+     *
+     * @param e
+     */
+    private void recordTimeout(TimeoutException e) {
+        if (e instanceof BudgetExhaustedException) {
+            circuitBreaker.recordIgnored();
+        } else {
+            circuitBreaker.recordFailure();
+        }
+    }
+
+    private void cacheStatus(String issueId, String status) {
+        issueStatuses.put(issueId, status);
+        lastKnownStatuses.put(issueId, status);
+    }
+
+    /**
+     * Probes the endpoint if the configured health check interval has elapsed and records
+     * whether it is reachable. A zero interval disables the probe.
+     */
+    public void checkHealth() {
+        long interval = endpoint.getHealthCheckInterval();
+        long now = System.currentTimeMillis();
+        if (interval <= 0 || now - lastHealthCheck < interval) {
+            return;
+        }
+        lastHealthCheck = now;
+
+        EndpointHealthState previousState = healthState;
+        try {
+            restClient.get(HEALTH_CHECK_PATH);
+            healthState = EndpointHealthState.UP;
+        } catch (RestException | IOException | URISyntaxException e) {
+            healthState = EndpointHealthState.DOWN;
+            if (previousState != EndpointHealthState.DOWN) {
+                log.warn("Jira endpoint {} is unavailable: {}", name, e.getMessage());
+            }
+        }
+
+        if (previousState == EndpointHealthState.DOWN && healthState == EndpointHealthState.UP) {
+            log.info("Jira endpoint {} is available again", name);
+        }
+
+        // Drop connections the server may already have closed
+        connectionManager.closeExpiredConnections();
+    }
+
+    /**
+     * Closes all pooled connections of this endpoint and removes its metrics
+     */
+    public void close() {
+        healthMetric.remove();
+        circuitMetric.remove();
+        connectionManager.shutdown();
+    }
+
+    private static boolean isSafeIssueKey(String issueId) {
+        return !issueId.isEmpty() && issueId.indexOf('"') < 0 && issueId.indexOf('\\') < 0;
+    }
+
+    private static String sanitizeMetricName(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_-]", "_");
+    }
+
+    private static boolean hasHttpStatus(JiraException e, int httpStatus) {
+        return e.getCause() instanceof RestException
+                && ((RestException) e.getCause()).getHttpStatusCode() == httpStatus;
+    }
+
+    /**
+     * Timeout of a call which was not allowed the full call timeout, as the time budget of the
+     * commit was running out
+     */
+    private static final class BudgetExhaustedException extends TimeoutException {
     }
 }
@@ -0,0 +1,278 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.vmware.gerrit.plugins.commitvalidator.entities.PatternTimeoutException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the matches of several patterns in a text with a single scan.
+ * <p>
+ * Patterns whose every match starts with a literal prefix are prefiltered with an Aho-Corasick
+ * automaton over all those prefixes: the text is scanned once, and a pattern is only tried,
+ * with {@link Matcher#lookingAt()}, where its prefix occurs. Patterns without a usable literal
+ * prefix fall back to a regular find loop. The matches of each pattern are the same as those of
+ * a {@link Matcher#find()} loop over the whole text.
+ * <p>
+ * Every pattern is matched through {@link PatternGuard}, so a pattern which backtracks
+ * catastrophically is abandoned once its time limit has passed. The limit of a prefiltered
+ * pattern only runs while the pattern is tried, not while the text is scanned or other
+ * patterns are matched.
+ */
+public class MultiPatternMatcher {
+    private static final MultiPatternMatcher EMPTY = new MultiPatternMatcher(ImmutableMap.of());
+
+    private final ImmutableList<String> names;
+    private final ImmutableList<Pattern> patterns;
+    private final int[] prefixLengths;
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<int[]> outputs = new ArrayList<>();
+    private int[] failures;
+
+    private MultiPatternMatcher(Map<String, Pattern> patternsByName) {
+        this.names = ImmutableList.copyOf(patternsByName.keySet());
+        this.patterns = ImmutableList.copyOf(patternsByName.values());
+        this.prefixLengths = new int[patterns.size()];
+
+        newState();
+        for (int i = 0; i < patterns.size(); i++) {
+            String prefix = literalPrefix(patterns.get(i));
+            prefixLengths[i] = prefix.length();
+            if (!prefix.isEmpty()) {
+                addPrefix(prefix, i);
+            }
+        }
+        buildFailures();
+    }
+
+    /**
+     * Compiles the matcher for given patterns
+     *
+     * @param patternsByName patterns keyed by the name their matches are returned under
+     * @return
+     */
+    public static MultiPatternMatcher compile(Map<String, Pattern> patternsByName) {
+        return patternsByName.isEmpty() ? EMPTY : new MultiPatternMatcher(patternsByName);
+    }
+
+    /**
+     * Returns all matches of every pattern in given text, keyed by pattern name. The matches of
+     * a pattern are null if matching it took longer than given time limit.
+     *
+     * @param text
+     * @param timeoutMs time limit per pattern, 0 or less for no limit
+     * @return
+     */
+    public Map<String, List<String>> findAll(CharSequence text, long timeoutMs) {
+        List<List<String>> matches = new ArrayList<>(patterns.size());
+        Matcher[] matchers = new Matcher[patterns.size()];
+        // Position from which the next match of each prefiltered pattern may start
+        int[] nextStarts = new int[patterns.size()];
+        // Time spent trying each prefiltered pattern so far
+        long[] elapsedNanos = new long[patterns.size()];
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        for (int i = 0; i < patterns.size(); i++) {
+            List<String> patternMatches = new ArrayList<>();
+            matches.add(patternMatches);
+            if (prefixLengths[i] == 0) {
+                Matcher matcher = patterns.get(i).matcher(PatternGuard.bounded(text, patterns.get(i), timeoutMs));
+                try {
+                    while (matcher.find()) {
+                        patternMatches.add(matcher.group());
+                    }
+                } catch (PatternTimeoutException e) {
+                    matches.set(i, null);
+                }
+            } else {
+                matchers[i] = patterns.get(i).matcher(text)
+                        .useTransparentBounds(true)
+                        .useAnchoringBounds(false);
+            }
+        }
+
+        if (transitions.get(0).isEmpty()) {
+            return toMap(matches);
+        }
+
+        int state = 0;
+        for (int position = 0; position < text.length(); position++) {
+            char c = text.charAt(position);
+            while (state != 0 && !transitions.get(state).containsKey(c)) {
+                state = failures[state];
+            }
+            state = transitions.get(state).getOrDefault(c, 0);
+
+            for (int patternIndex : outputs.get(state)) {
+                int start = position - prefixLengths[patternIndex] + 1;
+                if (start < nextStarts[patternIndex]) {
+                    continue;
+                }
+
+                Matcher matcher = matchers[patternIndex];
+                long started = System.nanoTime();
+                if (timeoutMs > 0) {
+                    // Bound this try by the time the pattern has left
+                    matcher.reset(PatternGuard.boundedUntil(text, patterns.get(patternIndex),
+                            started + timeoutNanos - elapsedNanos[patternIndex]));
+                }
+                matcher.region(start, text.length());
+                boolean timedOut;
+                try {
+                    if (matcher.lookingAt()) {
+                        matches.get(patternIndex).add(matcher.group());
+                        nextStarts[patternIndex] = Math.max(matcher.end(), start + 1);
+                    }
+                    elapsedNanos[patternIndex] += System.nanoTime() - started;
+                    timedOut = timeoutMs > 0 && elapsedNanos[patternIndex] >= timeoutNanos;
+                } catch (PatternTimeoutException e) {
+                    timedOut = true;
+                }
+                if (timedOut) {
+                    // Give up on the pattern
+                    matches.set(patternIndex, null);
+                    nextStarts[patternIndex] = Integer.MAX_VALUE;
+                }
+            }
+        }
+        return toMap(matches);
+    }
+
+    private Map<String, List<String>> toMap(List<List<String>> matches) {
+        Map<String, List<String>> matchesByName = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            matchesByName.put(names.get(i), matches.get(i));
+        }
+        return matchesByName;
+    }
+
+    private int newState() {
+        transitions.add(new HashMap<>());
+        outputs.add(new int[0]);
+        return transitions.size() - 1;
+    }
+
+    private void addPrefix(String prefix, int patternIndex) {
+        int state = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            Integer next = transitions.get(state).get(prefix.charAt(i));
+            if (next == null) {
+                next = newState();
+                transitions.get(state).put(prefix.charAt(i), next);
+            }
+            state = next;
+        }
+        outputs.set(state, append(outputs.get(state), new int[]{patternIndex}));
+    }
+
+    private void buildFailures() {
+        failures = new int[transitions.size()];
+        Queue<Integer> pending = new ArrayDeque<>(transitions.get(0).values());
+        while (!pending.isEmpty()) {
+            int state = pending.poll();
+            for (Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+                int next = transition.getValue();
+                int failure = failures[state];
+                while (failure != 0 && !transitions.get(failure).containsKey(transition.getKey())) {
+                    failure = failures[failure];
+                }
+                Integer failureNext = transitions.get(failure).get(transition.getKey());
+                failures[next] = failureNext == null || failureNext == next ? 0 : failureNext;
+                outputs.set(next, append(outputs.get(next), outputs.get(failures[next])));
+                pending.add(next);
+            }
+        }
+    }
+
+    private static int[] append(int[] first, int[] second) {
+        int[] merged = new int[first.length + second.length];
+        System.arraycopy(first, 0, merged, 0, first.length);
+        System.arraycopy(second, 0, merged, first.length, second.length);
+        return merged;
+    }
+
+    /**
+     * Returns the literal text every match of given pattern starts with. The analysis is
+     * conservative: patterns with flags, with an alternation outside of a group, or starting
+     * with anything but plain or escaped punctuation characters have no prefix.
+     *
+     * @param pattern
+     * @return the prefix, or an empty string if there is none
+     */
+    static String literalPrefix(Pattern pattern) {
+        String regex = pattern.pattern();
+        if (pattern.flags() != 0 || hasTopLevelAlternation(regex)) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int length = 1;
+            char literal;
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    break;
+                }
+                literal = regex.charAt(i + 1);
+                length = 2;
+            } else if ("[](){}.*+?^$|".indexOf(c) >= 0) {
+                break;
+            } else {
+                literal = c;
+            }
+
+            // A quantified character is optional or repeated, so the prefix ends before it
+            int next = i + length;
+            if (next < regex.length() && "*+?{".indexOf(regex.charAt(next)) >= 0) {
+                break;
+            }
+            prefix.append(literal);
+            i = next;
+        }
+        return prefix.toString();
+    }
+
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        // Character classes may be nested, e.g. [a-z&&[^x]]
+        int classDepth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                classDepth++;
+                // A leading ], also after a negation, is part of the class
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (classDepth > 0) {
+                if (c == ']') {
+                    classDepth--;
+                }
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,198 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Matches file paths against a set of globs, where "*" and "?" match within one path segment
+ * and "**" matches any number of segments. A glob without "/" matches the file name in any
+ * directory, e.g. "*.sql", and a glob starting with "/" is anchored at the root, e.g. "/pom.xml".
+ * <p>
+ * All globs are compiled into one trie of path segments, which is walked like an automaton.
+ * The states reached for a directory are shared by all files in it, so a list of paths is
+ * tested in a single pass, without testing every path against every glob.
+ */
+@ToString(onlyExplicitlyIncluded = true)
+public class PathMatcher {
+    @ToString.Include
+    private final List<String> globs;
+    private final Node root;
+
+    private PathMatcher(List<String> globs, Node root) {
+        this.globs = globs;
+        this.root = root;
+    }
+
+    /**
+     * Compiles the matcher for given globs
+     *
+     * @param globs
+     * @return
+     */
+    public static PathMatcher compile(List<String> globs) {
+        Node root = new Node(false);
+        for (String glob : globs) {
+            String path = glob.trim();
+            boolean bareName = path.indexOf('/') < 0;
+            while (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            if (path.isEmpty()) {
+                continue;
+            }
+            if (bareName) {
+                path = "**/" + path;
+            }
+
+            Node node = root;
+            for (String segment : path.split("/+")) {
+                node = node.child(segment);
+            }
+            node.terminal = true;
+        }
+        return new PathMatcher(globs, root);
+    }
+
+    /**
+     * Checks whether any of given paths is matched by one of the globs
+     *
+     * @param paths
+     * @return
+     */
+    public boolean matchesAny(Collection<String> paths) {
+        Map<String, Set<Node>> directoryStates = new HashMap<>();
+        directoryStates.put("", closure(Collections.singleton(root)));
+
+        for (String path : paths) {
+            int lastSlash = path.lastIndexOf('/');
+            Set<Node> states = directoryStates(lastSlash < 0 ? "" : path.substring(0, lastSlash), directoryStates);
+            if (states.isEmpty()) {
+                continue;
+            }
+            for (Node state : step(states, path.substring(lastSlash + 1))) {
+                if (state.terminal) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether given path is matched by one of the globs
+     *
+     * @param path
+     * @return
+     */
+    public boolean matches(String path) {
+        return matchesAny(Collections.singletonList(path));
+    }
+
+    private Set<Node> directoryStates(String directory, Map<String, Set<Node>> directoryStates) {
+        Set<Node> states = directoryStates.get(directory);
+        if (states == null) {
+            int lastSlash = directory.lastIndexOf('/');
+            Set<Node> parentStates = directoryStates(lastSlash < 0 ? "" : directory.substring(0, lastSlash),
+                    directoryStates);
+            states = parentStates.isEmpty()
+                    ? Collections.emptySet()
+                    : step(parentStates, directory.substring(lastSlash + 1));
+            directoryStates.put(directory, states);
+        }
+        return states;
+    }
+
+    private static Set<Node> step(Set<Node> states, String segment) {
+        Set<Node> next = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node state : states) {
+            if (state.recursive) {
+                next.add(state);
+            }
+            Node literal = state.literals.get(segment);
+            if (literal != null) {
+                next.add(literal);
+            }
+            for (Map.Entry<Pattern, Node> wildcard : state.wildcards.entrySet()) {
+                if (wildcard.getKey().matcher(segment).matches()) {
+                    next.add(wildcard.getValue());
+                }
+            }
+        }
+        return closure(next);
+    }
+
+    /**
+     * Adds the states reached by "**" matching no segment
+     */
+    private static Set<Node> closure(Set<Node> states) {
+        Set<Node> closed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Node> pending = new ArrayList<>(states);
+        while (!pending.isEmpty()) {
+            Node state = pending.remove(pending.size() - 1);
+            if (closed.add(state) && state.anyDepth != null) {
+                pending.add(state.anyDepth);
+            }
+        }
+        return closed;
+    }
+
+    private static Pattern segmentPattern(String segment) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : segment.toCharArray()) {
+            if (c != '*' && c != '?') {
+                literal.append(c);
+                continue;
+            }
+
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+                literal.setLength(0);
+            }
+            regex.append(c == '*' ? ".*" : ".");
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static final class Node {
+        // Reached by "**", consumes any number of segments
+        private final boolean recursive;
+        private final Map<String, Node> literals = new HashMap<>();
+        private final Map<Pattern, Node> wildcards = new HashMap<>();
+        private final Map<String, Pattern> wildcardPatterns = new HashMap<>();
+        private Node anyDepth;
+        private boolean terminal;
+
+        private Node(boolean recursive) {
+            this.recursive = recursive;
+        }
+
+        Node child(String segment) {
+            if (segment.equals("**")) {
+                if (anyDepth == null) {
+                    anyDepth = new Node(true);
+                }
+                return anyDepth;
+            }
+
+            if (segment.indexOf('*') < 0 && segment.indexOf('?') < 0) {
+                return literals.computeIfAbsent(segment, s -> new Node(false));
+            }
+
+            Pattern pattern = wildcardPatterns.computeIfAbsent(segment, PathMatcher::segmentPattern);
+            return wildcards.computeIfAbsent(pattern, p -> new Node(false));
+        }
+    }
+}
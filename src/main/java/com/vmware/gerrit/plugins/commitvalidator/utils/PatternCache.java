@@ -0,0 +1,52 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of compiled regular expressions keyed by the pattern string, shared by all
+ * config snapshots so that unchanged patterns are not recompiled when the config is reloaded.
+ */
+@Singleton
+public class PatternCache {
+    private static final int MAX_PATTERNS = 1000;
+
+    private final Cache<String, Pattern> patterns = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PATTERNS)
+            .recordStats()
+            .build();
+
+    @Inject
+    public PatternCache(MetricMaker metricMaker) {
+        metricMaker.newCallbackMetric("pattern_cache/hit_count", Long.class,
+                new Description("Number of template entry patterns served from the pattern cache")
+                        .setCumulative().setUnit("hits"),
+                () -> patterns.stats().hitCount());
+        metricMaker.newCallbackMetric("pattern_cache/miss_count", Long.class,
+                new Description("Number of template entry patterns compiled because they were not cached")
+                        .setCumulative().setUnit("misses"),
+                () -> patterns.stats().missCount());
+    }
+
+    /**
+     * Returns the compiled pattern for given regex, compiling it only if it is not cached yet.
+     * Throws PatternSyntaxException if the regex is invalid.
+     *
+     * @param regex
+     * @return
+     */
+    public Pattern get(String regex) {
+        Pattern pattern = patterns.getIfPresent(regex);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex);
+            patterns.put(regex, pattern);
+        }
+        return pattern;
+    }
+}
@@ -0,0 +1,204 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.PatternTimeoutException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Protects the receive threads against template entry patterns which backtrack catastrophically
+ * on crafted commit messages.
+ * <p>
+ * The text a pattern is matched against is wrapped into a char sequence which checks the clock
+ * every few thousand character reads and aborts the match with a
+ * {@link PatternTimeoutException} once the time limit has passed. As java.util.regex reads the
+ * text for every backtracking step, this bounds the time of any match.
+ */
+public class PatternGuard {
+    private static final int CHECK_INTERVAL = 4096;
+
+    private PatternGuard() {
+    }
+
+    /**
+     * Wraps given text so that matching a pattern against it fails after given time
+     *
+     * @param text
+     * @param pattern pattern the text is matched against, used for the error message
+     * @param timeoutMs time limit, 0 or less for no limit
+     * @return
+     */
+    public static CharSequence bounded(CharSequence text, Pattern pattern, long timeoutMs) {
+        if (timeoutMs <= 0) {
+            return text;
+        }
+        return boundedUntil(text, pattern, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    /**
+     * Wraps given text so that matching a pattern against it fails once given time, as returned
+     * by {@link System#nanoTime()}, has passed
+     *
+     * @param text
+     * @param pattern  pattern the text is matched against, used for the error message
+     * @param deadline
+     * @return
+     */
+    static CharSequence boundedUntil(CharSequence text, Pattern pattern, long deadline) {
+        return new BoundedCharSequence(text, pattern, deadline);
+    }
+
+    /**
+     * Checks whether the whole text matches given pattern within given time
+     *
+     * @param pattern
+     * @param text
+     * @param timeoutMs
+     * @return
+     * @throws PatternTimeoutException if the time limit has passed
+     */
+    public static boolean matches(Pattern pattern, CharSequence text, long timeoutMs) {
+        return pattern.matcher(bounded(text, pattern, timeoutMs)).matches();
+    }
+
+    /**
+     * Detects a repeated group which itself contains a repetition, like (a+)+ or (\w*\s?)*, the
+     * usual cause of catastrophic backtracking.
+     *
+     * @param regex
+     * @return
+     */
+    public static boolean hasNestedQuantifier(String regex) {
+        // For every open group whether it contains a repetition
+        Deque<boolean[]> groups = new ArrayDeque<>();
+        groups.push(new boolean[1]);
+        boolean lastGroupRepeats = false;
+        boolean afterQuantifier = false;
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+                lastGroupRepeats = false;
+                afterQuantifier = false;
+            } else if (c == '[') {
+                i = skipCharacterClass(regex, i);
+                lastGroupRepeats = false;
+                afterQuantifier = false;
+            } else if (c == '(') {
+                groups.push(new boolean[1]);
+                lastGroupRepeats = false;
+                afterQuantifier = false;
+            } else if (c == ')') {
+                lastGroupRepeats = groups.size() > 1 && groups.pop()[0];
+                if (lastGroupRepeats) {
+                    groups.peek()[0] = true;
+                }
+                afterQuantifier = false;
+            } else if (c == '?') {
+                // Optional or lazy, neither repeats
+                lastGroupRepeats = false;
+                afterQuantifier = true;
+            } else if (c == '*' || c == '+' || c == '{') {
+                if (c == '+' && afterQuantifier) {
+                    // Possessive quantifier
+                    continue;
+                }
+                boolean repeats = true;
+                if (c == '{') {
+                    int end = regex.indexOf('}', i);
+                    if (end < 0) {
+                        break;
+                    }
+                    repeats = isRepeatingBound(regex.substring(i + 1, end));
+                    i = end;
+                }
+                if (repeats) {
+                    if (lastGroupRepeats) {
+                        return true;
+                    }
+                    groups.peek()[0] = true;
+                }
+                lastGroupRepeats = false;
+                afterQuantifier = true;
+            } else {
+                lastGroupRepeats = false;
+                afterQuantifier = false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRepeatingBound(String bound) {
+        String[] limits = bound.split(",", -1);
+        try {
+            if (limits.length == 1) {
+                return Integer.parseInt(limits[0].trim()) > 1;
+            }
+            return limits[1].trim().isEmpty() || Integer.parseInt(limits[1].trim()) > 1;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static int skipCharacterClass(String regex, int start) {
+        int depth = 0;
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+                // A leading ], also after a negation, is part of the class
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return regex.length();
+    }
+
+    private static final class BoundedCharSequence implements CharSequence {
+        private final CharSequence text;
+        private final Pattern pattern;
+        private final long deadline;
+        private int reads;
+
+        private BoundedCharSequence(CharSequence text, Pattern pattern, long deadline) {
+            this.text = text;
+            this.pattern = pattern;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++reads % CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                throw new PatternTimeoutException(String.format(
+                        "Matching '%s' took too long", pattern.pattern()));
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+/**
+ * Time budget for validating a single commit. Calls to external endpoints are bounded by the
+ * remaining budget, so that the total validation time of a commit stays below the configured
+ * limit. It also records whether any value of the commit had to be decided without the
+ * endpoint or pattern giving an answer, so that such an outcome is not remembered.
+ */
+public class ValidationDeadline {
+    private final long deadlineNanos;
+    private final boolean bounded;
+    private volatile boolean degraded;
+
+    private ValidationDeadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Creates a deadline which expires after given number of milliseconds. A timeout of zero
+     * or less means the validation is not bounded.
+     *
+     * @param timeoutMillis
+     * @return
+     */
+    public static ValidationDeadline after(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            return unbounded();
+        }
+        return new ValidationDeadline(System.nanoTime() + timeoutMillis * 1_000_000L, true);
+    }
+
+    public static ValidationDeadline unbounded() {
+        return new ValidationDeadline(0, false);
+    }
+
+    public boolean isExpired() {
+        return bounded && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Records that a value was decided by a fallback, e.g. the failure policy of an unavailable
+     * endpoint or an abandoned pattern, rather than by its actual validation
+     */
+    public void markDegraded() {
+        degraded = true;
+    }
+
+    public boolean isDegraded() {
+        return degraded || isExpired();
+    }
+
+    /**
+     * Returns the time a call may take in milliseconds, which is the smaller of given call
+     * timeout and the remaining budget. A call timeout of zero or less means the call itself
+     * is not bounded. Returns Long.MAX_VALUE if neither is bounded.
+     *
+     * @param callTimeoutMillis
+     * @return
+     */
+    public long timeoutFor(long callTimeoutMillis) {
+        long timeout = callTimeoutMillis > 0 ? callTimeoutMillis : Long.MAX_VALUE;
+        if (bounded) {
+            long remaining = Math.max(0, (deadlineNanos - System.nanoTime()) / 1_000_000L);
+            timeout = Math.min(timeout, remaining);
+        }
+        return timeout;
+    }
+}
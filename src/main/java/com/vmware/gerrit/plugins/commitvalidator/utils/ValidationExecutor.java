@@ -0,0 +1,125 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.vmware.gerrit.plugins.commitvalidator.config.CommitValidatorConfig;
+import com.vmware.gerrit.plugins.commitvalidator.config.ConfigSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plugin owned executor for blocking calls to external endpoints, so that they can be bounded
+ * by a timeout and cancelled without blocking the receive thread beyond the time budget, and
+ * never run on the JVM wide common ForkJoinPool.
+ * <p>
+ * By default this is a bounded Gerrit work queue (visible in show-queue) with
+ * validation.threads threads. With validation.useVirtualThreads on JDK 21 or later, every task
+ * runs on its own virtual thread instead. The size is read when the plugin starts.
+ */
+@Slf4j
+@Singleton
+public class ValidationExecutor implements LifecycleListener {
+    private static final String QUEUE_NAME = "CommitValidator";
+
+    private final WorkQueue workQueue;
+    private final CommitValidatorConfig pluginConfig;
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private volatile ExecutorService executor;
+
+    @Inject
+    public ValidationExecutor(WorkQueue workQueue, CommitValidatorConfig pluginConfig, MetricMaker metricMaker) {
+        this.workQueue = workQueue;
+        this.pluginConfig = pluginConfig;
+
+        metricMaker.newCallbackMetric("validation_executor/queue_depth", Integer.class,
+                new Description("Number of endpoint calls waiting for a validation thread")
+                        .setGauge().setUnit("tasks"),
+                queuedTasks::get);
+        metricMaker.newCallbackMetric("validation_executor/active_threads", Integer.class,
+                new Description("Number of endpoint calls currently running")
+                        .setGauge().setUnit("threads"),
+                activeTasks::get);
+    }
+
+    @Override
+    public synchronized void start() {
+        ConfigSnapshot snapshot = pluginConfig.getSnapshot();
+        if (snapshot.isUseVirtualThreads()) {
+            executor = newVirtualThreadExecutor();
+        }
+        if (executor == null) {
+            executor = workQueue.createQueue(snapshot.getExecutorThreads(), QUEUE_NAME);
+            log.info("Started validation executor with {} threads", snapshot.getExecutorThreads());
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        ExecutorService current = executor;
+        if (current == null) {
+            throw new IllegalStateException("Validation executor is not started");
+        }
+
+        // A task cancelled while still queued never runs, so it leaves the queue when it is done
+        AtomicBoolean dequeued = new AtomicBoolean();
+        FutureTask<T> future = new FutureTask<T>(() -> {
+            if (dequeued.compareAndSet(false, true)) {
+                queuedTasks.decrementAndGet();
+            }
+            activeTasks.incrementAndGet();
+            try {
+                return task.call();
+            } finally {
+                activeTasks.decrementAndGet();
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (dequeued.compareAndSet(false, true)) {
+                    queuedTasks.decrementAndGet();
+                }
+            }
+        };
+
+        queuedTasks.incrementAndGet();
+        current.execute(future);
+        return future;
+    }
+
+    /**
+     * Creates a virtual thread per task executor if the JVM supports it. The plugin is built
+     * for Java 8, so the factory method is looked up reflectively.
+     *
+     * @return the executor or null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            ExecutorService virtualExecutor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("Started validation executor with virtual threads");
+            return virtualExecutor;
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads are not supported by this JVM, falling back to a thread pool");
+            return null;
+        }
+    }
+}
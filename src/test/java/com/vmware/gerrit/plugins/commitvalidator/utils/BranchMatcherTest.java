@@ -0,0 +1,75 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BranchMatcherTest {
+    @Test
+    public void noEntriesMatchAllBranches() {
+        assertTrue(BranchMatcher.compile(ImmutableList.of()).matches("refs/heads/anything"));
+        assertTrue(BranchMatcher.compile(null).matches("refs/for/master"));
+    }
+
+    @Test
+    public void branchNamesReferToRefsHeads() {
+        BranchMatcher matcher = BranchMatcher.compile(ImmutableList.of("master", "refs/heads/stable", "refs/meta/config"));
+
+        assertTrue(matcher.matches("refs/heads/master"));
+        assertTrue(matcher.matches("master"));
+        assertTrue(matcher.matches("refs/heads/stable"));
+        assertTrue(matcher.matches("refs/meta/config"));
+        assertFalse(matcher.matches("refs/heads/master2"));
+        assertFalse(matcher.matches("refs/tags/master"));
+    }
+
+    @Test
+    public void magicRefsMatchTheirDestinationBranch() {
+        BranchMatcher matcher = BranchMatcher.compile(ImmutableList.of("master"));
+
+        assertTrue(matcher.matches("refs/for/master"));
+        assertTrue(matcher.matches("refs/for/master%topic=x,wip"));
+        assertFalse(matcher.matches("refs/for/stable"));
+    }
+
+    @Test
+    public void globsMatchWithinOrAcrossSegments() {
+        BranchMatcher matcher = BranchMatcher.compile(ImmutableList.of("release/*", "hotfix/**", "v?"));
+
+        assertTrue(matcher.matches("refs/heads/release/1.0"));
+        assertFalse(matcher.matches("refs/heads/release/1.0/rc"));
+        assertTrue(matcher.matches("refs/heads/hotfix/1.0/rc"));
+        assertTrue(matcher.matches("refs/for/v2"));
+        assertFalse(matcher.matches("refs/heads/v10"));
+        assertFalse(matcher.matches("refs/heads/release.1"));
+    }
+
+    @Test
+    public void regularExpressionsStartWithCaret() {
+        BranchMatcher matcher = BranchMatcher.compile(ImmutableList.of("^stable-\\d+\\.\\d+", "^refs/tags/v.*"));
+
+        assertTrue(matcher.matches("refs/heads/stable-3.1"));
+        assertTrue(matcher.matches("refs/for/stable-3.1%wip"));
+        assertFalse(matcher.matches("refs/heads/stable-3"));
+        assertTrue(matcher.matches("refs/tags/v1.0"));
+        assertFalse(matcher.matches("refs/heads/v1.0"));
+    }
+
+    @Test
+    public void invalidRegularExpressionsAreIgnored() {
+        BranchMatcher matcher = BranchMatcher.compile(ImmutableList.of("^(unclosed", "master"));
+
+        assertTrue(matcher.matches("refs/heads/master"));
+        assertFalse(matcher.matches("refs/heads/(unclosed"));
+    }
+
+    @Test
+    public void normalizesMagicRefsToTheirDestinationBranch() {
+        assertEquals("refs/heads/master", BranchMatcher.normalize("refs/for/master%topic=x"));
+        assertEquals("refs/heads/master", BranchMatcher.normalize("master"));
+        assertEquals("refs/meta/config", BranchMatcher.normalize("refs/meta/config"));
+    }
+}
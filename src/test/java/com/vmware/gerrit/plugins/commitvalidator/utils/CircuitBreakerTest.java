@@ -0,0 +1,125 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.CircuitState;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+    private static final long LONG_OPEN_DURATION = 60_000;
+
+    @Test
+    public void opensOnceTheFailureRateIsReached() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("jira", 10, 50, LONG_OPEN_DURATION, 1);
+
+        // Too few calls to decide
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.recordFailure();
+        }
+        assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void staysClosedBelowTheFailureRate() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("jira", 10, 50, LONG_OPEN_DURATION, 1);
+
+        for (int i = 0; i < 10; i++) {
+            if (i % 3 == 0) {
+                circuitBreaker.recordFailure();
+            } else {
+                circuitBreaker.recordSuccess();
+            }
+        }
+        assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void oldOutcomesLeaveTheWindow() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("jira", 5, 60, LONG_OPEN_DURATION, 1);
+
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.recordSuccess();
+        }
+        // The window only holds successes now, so two more failures stay below 60%
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void halfOpenClosesAfterSuccessfulTrialCalls() {
+        CircuitBreaker circuitBreaker = openCircuit(2);
+
+        assertTrue(circuitBreaker.allowRequest());
+        assertEquals(CircuitState.HALF_OPEN, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+        // All trial permits are in use
+        assertFalse(circuitBreaker.allowRequest());
+
+        circuitBreaker.recordSuccess();
+        assertEquals(CircuitState.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.recordSuccess();
+        assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.allowRequest());
+    }
+
+    @Test
+    public void halfOpenReopensOnFailedTrialCall() {
+        CircuitBreaker circuitBreaker = openCircuit(2);
+
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void ignoredTrialCallHandsBackItsPermit() {
+        CircuitBreaker circuitBreaker = openCircuit(1);
+
+        assertTrue(circuitBreaker.allowRequest());
+        assertFalse(circuitBreaker.allowRequest());
+        circuitBreaker.recordIgnored();
+        assertEquals(CircuitState.HALF_OPEN, circuitBreaker.getState());
+
+        assertTrue(circuitBreaker.allowRequest());
+        circuitBreaker.recordSuccess();
+        assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void ignoredCallsAreNotRecorded() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("jira", 5, 50, LONG_OPEN_DURATION, 1);
+
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.recordIgnored();
+        }
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.recordFailure();
+        }
+        assertEquals(CircuitState.CLOSED, circuitBreaker.getState());
+    }
+
+    /**
+     * Returns a circuit which has just opened and lets trial calls through right away
+     */
+    private static CircuitBreaker openCircuit(int halfOpenProbes) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("jira", 5, 50, 0, halfOpenProbes);
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.recordFailure();
+        }
+        assertEquals(CircuitState.OPEN, circuitBreaker.getState());
+        return circuitBreaker;
+    }
+}
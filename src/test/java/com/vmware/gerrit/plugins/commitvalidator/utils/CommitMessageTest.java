@@ -0,0 +1,121 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CommitMessageTest {
+    private static final String MESSAGE = "Fix the build\n"
+            + "\n"
+            + "Details of the fix.\n"
+            + "\n"
+            + "   Bug-Id: 42  \n"
+            + "Bug: 12\n"
+            + "Link: http://example.com/12\n"
+            + "Reviewed\n"
+            + "Bug: 13\n";
+
+    @Test
+    public void valueOfTheFirstLineStartingWithKey() {
+        CommitMessage commitMessage = CommitMessage.parse("Fix the build", MESSAGE);
+
+        assertEquals("12", commitMessage.getKeyValue("Bug:"));
+        assertEquals("42", commitMessage.getKeyValue("Bug"));
+        assertEquals("42", commitMessage.getKeyValue("Bug-Id"));
+    }
+
+    @Test
+    public void valueIsBetweenTheFirstAndSecondColon() {
+        CommitMessage commitMessage = CommitMessage.parse("Fix the build", MESSAGE);
+
+        assertEquals("http", commitMessage.getKeyValue("Link"));
+    }
+
+    @Test
+    public void lineWithoutColonHasEmptyValue() {
+        CommitMessage commitMessage = CommitMessage.parse("Fix the build", MESSAGE);
+
+        assertEquals("", commitMessage.getKeyValue("Reviewed"));
+    }
+
+    @Test
+    public void missingKeyHasNoValue() {
+        CommitMessage commitMessage = CommitMessage.parse("Fix the build", MESSAGE);
+
+        assertNull(commitMessage.getKeyValue("Change-Id"));
+        assertNull(commitMessage.getKeyValue("Bugs"));
+    }
+
+    @Test
+    public void keepsSubjectAndFullMessage() {
+        CommitMessage commitMessage = CommitMessage.parse("Fix the build", MESSAGE);
+
+        assertEquals("Fix the build", commitMessage.getSubject());
+        assertEquals(MESSAGE, commitMessage.getFullMessage().toString());
+    }
+
+    @Test
+    public void readsAsciiMessageFromTheRawCommit() {
+        CommitMessage commitMessage = CommitMessage.parse(commit(MESSAGE.getBytes(StandardCharsets.US_ASCII), null), 0);
+
+        assertEquals("Fix the build", commitMessage.getSubject());
+        assertEquals(MESSAGE, commitMessage.getFullMessage().toString());
+        assertEquals("12", commitMessage.getKeyValue("Bug:"));
+        assertFalse(commitMessage.isTruncated());
+    }
+
+    @Test
+    public void decodesMessageWithItsEncoding() {
+        String message = "Corrige le d\u00e9ploiement\n\nBug: 12\nRelecteur: Fran\u00e7ois\n";
+        CommitMessage commitMessage = CommitMessage.parse(
+                commit(message.getBytes(StandardCharsets.ISO_8859_1), "ISO-8859-1"), 0);
+
+        assertEquals(message, commitMessage.getFullMessage().toString());
+        assertEquals("Fran\u00e7ois", commitMessage.getKeyValue("Relecteur"));
+    }
+
+    @Test
+    public void trimsMessageWithoutCopyingIt() {
+        CommitMessage commitMessage = CommitMessage.parse("Subject", "\n  Subject\n\nBody  \n\n");
+
+        assertEquals("Subject\n\nBody", commitMessage.getTrimmedMessage().toString());
+    }
+
+    @Test
+    public void overlongMessageKeepsItsFirstAndLastLines() {
+        StringBuilder message = new StringBuilder("Fix the build\n\nMiddle: 1\n");
+        for (int i = 0; i < 100; i++) {
+            message.append("Line ").append(i).append(" of a long description.\n");
+        }
+        message.append("\nBug: 12\n");
+
+        CommitMessage commitMessage = CommitMessage.parse(
+                commit(message.toString().getBytes(StandardCharsets.US_ASCII), null), 200);
+
+        assertTrue(commitMessage.isTruncated());
+        assertTrue(commitMessage.getFullMessage().length() <= 201);
+        assertTrue(commitMessage.getFullMessage().toString().startsWith("Fix the build\n"));
+        assertEquals("12", commitMessage.getKeyValue("Bug"));
+        assertEquals("1", commitMessage.getKeyValue("Middle"));
+        assertNull(commitMessage.getKeyValue("Line 50 "));
+    }
+
+    private static RevCommit commit(byte[] message, String encoding) {
+        String header = "tree 4b825dc642cb6eb9a060e54bf8d69288fbee4904\n"
+                + "author A U Thor <author@example.com> 1600000000 +0000\n"
+                + "committer C O Mitter <committer@example.com> 1600000000 +0000\n"
+                + (encoding == null ? "" : "encoding " + encoding + "\n")
+                + "\n";
+        byte[] headerBytes = header.getBytes(StandardCharsets.US_ASCII);
+        byte[] raw = new byte[headerBytes.length + message.length];
+        System.arraycopy(headerBytes, 0, raw, 0, headerBytes.length);
+        System.arraycopy(message, 0, raw, headerBytes.length, message.length);
+        return RevCommit.parse(raw);
+    }
+}
@@ -0,0 +1,119 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MultiPatternMatcherTest {
+    private static final List<String> TEXTS = ImmutableList.of(
+            "",
+            "Fix PR-12 and PR-13, see PR-PR-14",
+            "[PR-1][PR-2] ABC-1 BC-2 C-3 ABABC-4",
+            "Bug: 12\nBug: 13\nbug: 14\nReviewed-by: someone\n",
+            "aaaa ab abab abc abcabc CVE-2021-44228 cve-2021-1",
+            "PR-\nPR-x PR-1x PR-123456789");
+
+    @Test
+    public void findsSameMatchesAsFindLoop() {
+        Map<String, Pattern> patterns = new LinkedHashMap<>();
+        // With literal prefixes, some of them prefixes or suffixes of others
+        patterns.put("pr", Pattern.compile("PR-\\d+"));
+        patterns.put("bracketed", Pattern.compile("\\[PR-\\d+\\]"));
+        patterns.put("abc", Pattern.compile("ABC-\\d"));
+        patterns.put("bc", Pattern.compile("BC-\\d"));
+        patterns.put("c", Pattern.compile("C-\\d"));
+        patterns.put("ab", Pattern.compile("ab"));
+        patterns.put("abab", Pattern.compile("abab"));
+        patterns.put("bug", Pattern.compile("Bug: \\d+"));
+        patterns.put("overlapping", Pattern.compile("a(?=a)"));
+        // Without a usable literal prefix
+        patterns.put("alternation", Pattern.compile("PR-\\d+|CVE-\\d+-\\d+"));
+        patterns.put("caseInsensitive", Pattern.compile("cve-\\d+", Pattern.CASE_INSENSITIVE));
+        patterns.put("class", Pattern.compile("[A-Z]+-\\d+"));
+        patterns.put("optional", Pattern.compile("a?bc"));
+
+        MultiPatternMatcher matcher = MultiPatternMatcher.compile(patterns);
+        for (String text : TEXTS) {
+            Map<String, List<String>> matches = matcher.findAll(text, 0);
+            for (Map.Entry<String, Pattern> pattern : patterns.entrySet()) {
+                assertEquals(pattern.getKey() + " in '" + text + "'",
+                        findLoop(pattern.getValue(), text), matches.get(pattern.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void noPatternsFindNothing() {
+        assertEquals(new LinkedHashMap<>(), MultiPatternMatcher.compile(new LinkedHashMap<>()).findAll("PR-1", 0));
+    }
+
+    @Test
+    public void slowPatternDoesNotUseUpTheTimeLimitOfOthers() {
+        Map<String, Pattern> patterns = new LinkedHashMap<>();
+        patterns.put("pr", Pattern.compile("PR-\\d+"));
+        patterns.put("slow", Pattern.compile("((a+)+)+b"));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            text.append('a');
+        }
+        for (int i = 0; i < 2000; i++) {
+            text.append(" PR-").append(i);
+        }
+
+        Map<String, List<String>> matches = MultiPatternMatcher.compile(patterns).findAll(text, 100);
+
+        assertNull(matches.get("slow"));
+        assertEquals(2000, matches.get("pr").size());
+    }
+
+    @Test
+    public void literalPrefixEndsAtTheFirstMetacharacter() {
+        assertEquals("PR-", MultiPatternMatcher.literalPrefix(Pattern.compile("PR-\\d+")));
+        assertEquals("[PR-", MultiPatternMatcher.literalPrefix(Pattern.compile("\\[PR-\\d+\\]")));
+        assertEquals("Bug: ", MultiPatternMatcher.literalPrefix(Pattern.compile("Bug: (\\d+)")));
+        assertEquals("", MultiPatternMatcher.literalPrefix(Pattern.compile("\\d+")));
+        assertEquals("", MultiPatternMatcher.literalPrefix(Pattern.compile("^PR-\\d+")));
+    }
+
+    @Test
+    public void literalPrefixExcludesQuantifiedCharacter() {
+        assertEquals("a", MultiPatternMatcher.literalPrefix(Pattern.compile("ab*c")));
+        assertEquals("a", MultiPatternMatcher.literalPrefix(Pattern.compile("ab?c")));
+        assertEquals("", MultiPatternMatcher.literalPrefix(Pattern.compile("a+b")));
+        assertEquals("ab", MultiPatternMatcher.literalPrefix(Pattern.compile("abc{2}")));
+    }
+
+    @Test
+    public void noLiteralPrefixWithTopLevelAlternation() {
+        assertEquals("", MultiPatternMatcher.literalPrefix(Pattern.compile("PR-\\d+|BUG-\\d+")));
+        assertEquals("PR-", MultiPatternMatcher.literalPrefix(Pattern.compile("PR-(\\d+|X)")));
+        assertEquals("PR", MultiPatternMatcher.literalPrefix(Pattern.compile("PR[|]\\d")));
+        assertEquals("PR", MultiPatternMatcher.literalPrefix(Pattern.compile("PR[]|]\\d")));
+        assertEquals("PR|", MultiPatternMatcher.literalPrefix(Pattern.compile("PR\\|\\d")));
+        assertEquals("", MultiPatternMatcher.literalPrefix(Pattern.compile("PR[^]]|\\d")));
+    }
+
+    @Test
+    public void noLiteralPrefixWithFlags() {
+        assertEquals("", MultiPatternMatcher.literalPrefix(Pattern.compile("PR-\\d+", Pattern.CASE_INSENSITIVE)));
+        assertEquals("", MultiPatternMatcher.literalPrefix(Pattern.compile("(?i)PR-\\d+")));
+    }
+
+    private static List<String> findLoop(Pattern pattern, String text) {
+        List<String> matches = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            matches.add(matcher.group());
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,74 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PathMatcherTest {
+    @Test
+    public void recursiveGlobMatchesAllFilesBelowItsDirectory() {
+        PathMatcher matcher = PathMatcher.compile(ImmutableList.of("security/**"));
+
+        assertTrue(matcher.matches("security/Policy.java"));
+        assertTrue(matcher.matches("security/auth/ldap/Realm.java"));
+        assertFalse(matcher.matches("src/security/Policy.java"));
+        assertFalse(matcher.matches("securityPolicy.java"));
+    }
+
+    @Test
+    public void recursiveGlobMatchesNoSegment() {
+        PathMatcher matcher = PathMatcher.compile(ImmutableList.of("**/test/**/*.java"));
+
+        assertTrue(matcher.matches("test/A.java"));
+        assertTrue(matcher.matches("module/test/A.java"));
+        assertTrue(matcher.matches("module/src/test/java/A.java"));
+        assertFalse(matcher.matches("module/src/main/java/A.java"));
+    }
+
+    @Test
+    public void bareNameGlobMatchesInAnyDirectory() {
+        PathMatcher matcher = PathMatcher.compile(ImmutableList.of("*.sql"));
+
+        assertTrue(matcher.matches("schema.sql"));
+        assertTrue(matcher.matches("db/migrations/V1__init.sql"));
+        assertFalse(matcher.matches("schema.sql.orig"));
+        assertFalse(matcher.matches("db/sql/README"));
+    }
+
+    @Test
+    public void leadingSlashIsAnchoredAtTheRoot() {
+        PathMatcher matcher = PathMatcher.compile(ImmutableList.of("/docs/*.md"));
+
+        assertTrue(matcher.matches("docs/index.md"));
+        assertFalse(matcher.matches("module/docs/index.md"));
+        assertFalse(matcher.matches("docs/api/index.md"));
+    }
+
+    @Test
+    public void wildcardsMatchWithinOneSegment() {
+        PathMatcher matcher = PathMatcher.compile(ImmutableList.of("src/*/v?.txt"));
+
+        assertTrue(matcher.matches("src/a/v1.txt"));
+        assertFalse(matcher.matches("src/a/b/v1.txt"));
+        assertFalse(matcher.matches("src/a/v10.txt"));
+    }
+
+    @Test
+    public void matchesAnyOfSeveralGlobsAndPaths() {
+        PathMatcher matcher = PathMatcher.compile(ImmutableList.of("security/**", "*.sql", "/pom.xml"));
+
+        assertTrue(matcher.matchesAny(ImmutableList.of("README.md", "db/V2.sql")));
+        assertTrue(matcher.matchesAny(ImmutableList.of("a/b/c.txt", "pom.xml")));
+        assertFalse(matcher.matchesAny(ImmutableList.of("a/b/c.txt", "module/pom.xml", "a/security/x")));
+        assertFalse(matcher.matchesAny(ImmutableList.of()));
+    }
+
+    @Test
+    public void noGlobsMatchNothing() {
+        PathMatcher matcher = PathMatcher.compile(ImmutableList.of(" ", "/"));
+
+        assertFalse(matcher.matches("pom.xml"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.vmware.gerrit.plugins.commitvalidator.utils;
+
+import com.vmware.gerrit.plugins.commitvalidator.entities.PatternTimeoutException;
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PatternGuardTest {
+    @Test
+    public void detectsNestedQuantifiers() {
+        assertTrue(PatternGuard.hasNestedQuantifier("(a+)+"));
+        assertTrue(PatternGuard.hasNestedQuantifier("(\\w*\\s?)*"));
+        assertTrue(PatternGuard.hasNestedQuantifier("(?:a+)+"));
+        assertTrue(PatternGuard.hasNestedQuantifier("(a|b+){2,}"));
+        assertTrue(PatternGuard.hasNestedQuantifier("((ab)*c)+"));
+        assertTrue(PatternGuard.hasNestedQuantifier("PR-(\\d{1,5})*"));
+    }
+
+    @Test
+    public void acceptsPatternsWithoutNestedQuantifiers() {
+        assertFalse(PatternGuard.hasNestedQuantifier("PR-\\d+"));
+        assertFalse(PatternGuard.hasNestedQuantifier("(ab)+"));
+        assertFalse(PatternGuard.hasNestedQuantifier("a+b+"));
+        assertFalse(PatternGuard.hasNestedQuantifier("(a+)?"));
+        assertFalse(PatternGuard.hasNestedQuantifier("(a+)b+"));
+        assertFalse(PatternGuard.hasNestedQuantifier("(a+){1}"));
+        assertFalse(PatternGuard.hasNestedQuantifier("(a{1,1})+"));
+    }
+
+    @Test
+    public void ignoresQuantifiersInClassesAndEscapes() {
+        assertFalse(PatternGuard.hasNestedQuantifier("[(a+)]+"));
+        assertFalse(PatternGuard.hasNestedQuantifier("[]+)]+"));
+        assertFalse(PatternGuard.hasNestedQuantifier("\\(a+\\)+"));
+    }
+
+    @Test(expected = PatternTimeoutException.class)
+    public void abortsCatastrophicBacktracking() {
+        PatternGuard.matches(Pattern.compile("((a+)+)+b"), "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!", 100);
+    }
+
+    @Test
+    public void matchesWithinTheTimeLimit() {
+        assertTrue(PatternGuard.matches(Pattern.compile("PR-\\d+"), "PR-12", 1000));
+        assertFalse(PatternGuard.matches(Pattern.compile("PR-\\d+"), "PR-12x", 1000));
+    }
+
+    @Test
+    public void noTimeLimitKeepsTheText() {
+        String text = "PR-12";
+        assertSame(text, PatternGuard.bounded(text, Pattern.compile("PR-\\d+"), 0));
+    }
+}